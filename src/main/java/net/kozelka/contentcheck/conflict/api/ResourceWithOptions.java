@@ -1,10 +1,13 @@
 package net.kozelka.contentcheck.conflict.api;
 
 import java.util.ArrayList;
-import java.util.HashMap;
+import java.util.Arrays;
+import java.util.LinkedHashMap;
 import java.util.List;
 import java.util.Map;
 import net.kozelka.contentcheck.conflict.model.ArchiveInfo;
+import net.kozelka.contentcheck.conflict.model.ResourceInfo;
+import net.kozelka.contentcheck.conflict.model.SymbolTable;
 
 /**
  * Represents a resource, with all the candidate {@link ArchiveInfo archives} trying to supply it.
@@ -12,23 +15,43 @@ import net.kozelka.contentcheck.conflict.model.ArchiveInfo;
  * @author Petr Kozelka
  */
 public final class ResourceWithOptions {
-    private String uri;
-    private final Map<String, List<ArchiveInfo>> candidatesByHash = new HashMap<String, List<ArchiveInfo>>();
-    private final List<ArchiveInfo> allCandidates = new ArrayList<ArchiveInfo>();
+    private final SymbolTable symbols;
+    private final int uriId;
+    private final List<ArchiveInfo> allCandidates = new ArrayList<ArchiveInfo>(2);
+    private long[] candidateCrcs = new long[2];
+    private long[] candidateSizes = new long[2];
+    private boolean conflicting;
 
-    public void addCandidate(String hash, ArchiveInfo archive) {
-        allCandidates.add(archive);
-        //
-        List<ArchiveInfo> candidates = candidatesByHash.get(hash);
-        if (candidates == null) {
-            candidates = new ArrayList<ArchiveInfo>();
-            candidatesByHash.put(hash, candidates);
+    /**
+     * @param symbols the symbol table holding the resource uri
+     * @param uriId id of the resource uri
+     */
+    public ResourceWithOptions(SymbolTable symbols, int uriId) {
+        this.symbols = symbols;
+        this.uriId = uriId;
+    }
+
+    /**
+     * @param archive the archive supplying the resource
+     * @param crc CRC-32 of the resource in that archive
+     * @param size size of the resource in that archive
+     */
+    public void addCandidate(ArchiveInfo archive, long crc, long size) {
+        final int index = allCandidates.size();
+        if (index == candidateCrcs.length) {
+            candidateCrcs = Arrays.copyOf(candidateCrcs, index * 2);
+            candidateSizes = Arrays.copyOf(candidateSizes, index * 2);
+        }
+        if (index > 0 && !hasSameContent(0, crc, size)) {
+            conflicting = true;
         }
-        candidates.add(archive);
+        allCandidates.add(archive);
+        candidateCrcs[index] = crc;
+        candidateSizes[index] = size;
     }
 
     public boolean hasConflicts() {
-        return candidatesByHash.size() > 1;
+        return conflicting;
     }
 
     public boolean hasOverlaps() {
@@ -36,18 +59,40 @@ public final class ResourceWithOptions {
     }
 
     public String getUri() {
-        return uri;
+        return symbols.get(uriId);
     }
 
-    public void setUri(String uri) {
-        this.uri = uri;
+    public int getUriId() {
+        return uriId;
     }
 
     public List<ArchiveInfo> getAllCandidates() {
         return allCandidates;
     }
 
+    /**
+     * @param index position in {@link #getAllCandidates()}
+     * @return true if the resource supplied by that candidate has given CRC and size
+     */
+    public boolean hasSameContent(int index, long crc, long size) {
+        return candidateCrcs[index] == crc && candidateSizes[index] == size;
+    }
+
+    /**
+     * @return candidates grouped by {@link ResourceInfo#getHash() hash} of the resource they supply, in order of first appearance;
+     * computed on each call
+     */
     public Map<String, List<ArchiveInfo>> getCandidatesByHash() {
+        final Map<String, List<ArchiveInfo>> candidatesByHash = new LinkedHashMap<String, List<ArchiveInfo>>();
+        for (int i = 0; i < allCandidates.size(); i++) {
+            final String hash = ResourceInfo.hash(candidateCrcs[i], candidateSizes[i]);
+            List<ArchiveInfo> candidates = candidatesByHash.get(hash);
+            if (candidates == null) {
+                candidates = new ArrayList<ArchiveInfo>();
+                candidatesByHash.put(hash, candidates);
+            }
+            candidates.add(allCandidates.get(i));
+        }
         return candidatesByHash;
     }
 }
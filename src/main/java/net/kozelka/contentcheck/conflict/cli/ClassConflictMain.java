@@ -7,6 +7,7 @@ import net.kozelka.contentcheck.conflict.api.ClassConflictReport;
 import net.kozelka.contentcheck.conflict.impl.ClassConflictAnalyzer;
 import net.kozelka.contentcheck.conflict.impl.ClassConflictPrinter;
 import net.kozelka.contentcheck.conflict.model.ArchiveInfo;
+import net.kozelka.contentcheck.conflict.model.SymbolTable;
 import net.kozelka.contentcheck.conflict.util.ArchiveLoader;
 import org.codehaus.plexus.util.cli.StreamConsumer;
 
@@ -23,7 +24,7 @@ public class ClassConflictMain {
         System.out.println("Detecting conflict in " + war);
         System.out.println("Class preview threshold: " + previewThreshold);
         final ClassConflictAnalyzer analyzer = new ClassConflictAnalyzer();
-        final List<ArchiveInfo> archives = ArchiveLoader.loadWar(war);
+        final List<ArchiveInfo> archives = ArchiveLoader.loadClasspath(war, new SymbolTable(), Runtime.getRuntime().availableProcessors());
         final ClassConflictReport report = analyzer.analyze(archives);
         final ClassConflictPrinter printer = new ClassConflictPrinter();
         printer.setPreviewThreshold(previewThreshold);
@@ -4,7 +4,7 @@ import java.util.Collection;
 import net.kozelka.contentcheck.conflict.api.ArchiveConflict;
 import net.kozelka.contentcheck.conflict.api.ClassConflictReport;
 import net.kozelka.contentcheck.conflict.model.ArchiveInfo;
-import net.kozelka.contentcheck.conflict.model.ResourceInfo;
+import net.kozelka.contentcheck.conflict.model.SymbolTable;
 
 /**
  * Detects class conflicts inside given set of classpath elements.
@@ -13,13 +13,14 @@ import net.kozelka.contentcheck.conflict.model.ResourceInfo;
 public class ClassConflictAnalyzer {
 
     public ClassConflictReport analyze(Collection<ArchiveInfo> archives) {
-        final ClasspathResources cpr = new ClasspathResources();
+        final ClasspathResources cpr = new ClasspathResources(commonSymbols(archives));
         for (ArchiveInfo archive : archives) {
-            for (ResourceInfo resource : archive.getResources()) {
-                final String resourceName = resource.getUri();
+            cpr.addArchive(archive);
+            for (int i = 0; i < archive.getResourceCount(); i++) {
+                final String resourceName = archive.getUri(i);
                 if (!resourceName.endsWith(".class")) continue;
 
-                cpr.addResource(resource, archive);
+                cpr.addResource(archive, i);
             }
         }
         // prepare report
@@ -36,4 +37,19 @@ public class ClassConflictAnalyzer {
         return report;
     }
 
+    /**
+     * @return the symbol table shared by all archives, as when loaded together; a new one if they do not share any
+     */
+    private static SymbolTable commonSymbols(Collection<ArchiveInfo> archives) {
+        SymbolTable result = null;
+        for (ArchiveInfo archive : archives) {
+            if (result == null) {
+                result = archive.getSymbols();
+            } else if (result != archive.getSymbols()) {
+                return new SymbolTable();
+            }
+        }
+        return result == null ? new SymbolTable() : result;
+    }
+
 }
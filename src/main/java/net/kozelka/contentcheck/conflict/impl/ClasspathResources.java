@@ -1,56 +1,110 @@
 package net.kozelka.contentcheck.conflict.impl;
 
+import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.Collection;
-import java.util.HashMap;
+import java.util.IdentityHashMap;
+import java.util.List;
 import java.util.Map;
 import net.kozelka.contentcheck.conflict.api.ArchiveConflict;
 import net.kozelka.contentcheck.conflict.api.ResourceWithOptions;
 import net.kozelka.contentcheck.conflict.model.ArchiveInfo;
 import net.kozelka.contentcheck.conflict.model.ResourceInfo;
+import net.kozelka.contentcheck.conflict.model.SymbolTable;
 
 /**
- * Collects classpath and registers all resource conflicts during that
+ * Collects classpath and registers all resource conflicts during that.
+ * Resources are identified by their uri id in the symbol table, which directly indexes an array.
+ * Archives are identified by dense ids, assigned here in order of their first appearance; the archives themselves are not modified.
  *
  * @author Petr Kozelka
  */
 class ClasspathResources {
     final ConflictCollector conflictCollector = new ConflictCollector();
-    final Map<String, ResourceWithOptions> resourcesByUri = new HashMap<String, ResourceWithOptions>();
+    private final SymbolTable symbols;
+    private ResourceWithOptions[] resourcesById = new ResourceWithOptions[0];
+    private int resourceCount;
+    private final Map<ArchiveInfo, Integer> archiveIds = new IdentityHashMap<ArchiveInfo, Integer>();
+    /**
+     * The archive whose id was looked up last; resources of one archive usually come together.
+     */
+    private ArchiveInfo lastArchive;
+    private int lastArchiveId;
 
-    public void addResource(ResourceInfo resource, ArchiveInfo archive) {
-        final String resourceUri = resource.getUri();
-        final String myHash = resource.getHash();
-        ResourceWithOptions rwo = resourcesByUri.get(resourceUri);
-        if (rwo == null) {
-            rwo = new ResourceWithOptions();
-            rwo.setUri(resourceUri);
-            resourcesByUri.put(resourceUri, rwo);
-        } else {
-            for (ArchiveInfo candidate : rwo.getAllCandidates()) {
-                final ResourceInfo hisResource = findResourceByUri(candidate, resourceUri);
-                final String hisHash = hisResource.getHash();
-                final boolean isDuplicate =  myHash.equals(hisHash);
-                conflictCollector.addOverlap(candidate, archive, resource, isDuplicate);
-                conflictCollector.addOverlap(archive, candidate, resource, isDuplicate);
+    /**
+     * @param symbols the symbol table shared by archives; others have their uris interned into it
+     */
+    ClasspathResources(SymbolTable symbols) {
+        this.symbols = symbols;
+    }
+
+    /**
+     * Assigns the archive next id, unless it already has one; archives added implicitly with their resources get it too.
+     * @param archive the archive
+     */
+    public void addArchive(ArchiveInfo archive) {
+        getArchiveId(archive);
+    }
+
+    private int getArchiveId(ArchiveInfo archive) {
+        if (archive != lastArchive) {
+            Integer id = archiveIds.get(archive);
+            if (id == null) {
+                id = archiveIds.size();
+                archiveIds.put(archive, id);
             }
+            lastArchive = archive;
+            lastArchiveId = id;
         }
-        rwo.addCandidate(myHash, archive);
+        return lastArchiveId;
     }
 
-    static ResourceInfo findResourceByUri(ArchiveInfo archive, String resourceUri) {
-        for (ResourceInfo resource : archive.getResources()) {
-            if (resource.getUri().equals(resourceUri)) {
-                return resource;
+    /**
+     * @param archive the archive
+     * @param index position of the resource in the archive
+     */
+    public void addResource(ArchiveInfo archive, int index) {
+        final int uriId = archive.getSymbols() == symbols ? archive.getUriId(index) : symbols.intern(archive.getUri(index));
+        final long crc = archive.getCrc(index);
+        final long size = archive.getSize(index);
+        final int archiveId = getArchiveId(archive);
+        if (uriId >= resourcesById.length) {
+            resourcesById = Arrays.copyOf(resourcesById, Math.max(uriId + 1, symbols.size()));
+        }
+        ResourceWithOptions rwo = resourcesById[uriId];
+        if (rwo == null) {
+            rwo = new ResourceWithOptions(symbols, uriId);
+            resourcesById[uriId] = rwo;
+            resourceCount++;
+        } else {
+            // candidate CRCs and sizes are kept along, so that their archives need not be searched
+            final ResourceInfo resource = archive.getResource(index);
+            final List<ArchiveInfo> candidates = rwo.getAllCandidates();
+            for (int i = 0; i < candidates.size(); i++) {
+                final ArchiveInfo candidate = candidates.get(i);
+                final int candidateId = archiveIds.get(candidate);
+                final boolean isDuplicate = rwo.hasSameContent(i, crc, size);
+                conflictCollector.addOverlap(candidateId, candidate, archiveId, archive, resource, isDuplicate);
+                conflictCollector.addOverlap(archiveId, archive, candidateId, candidate, resource, isDuplicate);
             }
         }
-        return null;
+        rwo.addCandidate(archive, crc, size);
     }
 
     public Collection<? extends ArchiveConflict> getConflicts() {
         return conflictCollector.getAll();
     }
 
+    /**
+     * @return all resources, in order of their uri ids
+     */
     public Collection<ResourceWithOptions> getResources() {
-        return resourcesByUri.values();
+        final List<ResourceWithOptions> result = new ArrayList<ResourceWithOptions>(resourceCount);
+        for (ResourceWithOptions rwo : resourcesById) {
+            if (rwo != null) {
+                result.add(rwo);
+            }
+        }
+        return result;
     }
 }
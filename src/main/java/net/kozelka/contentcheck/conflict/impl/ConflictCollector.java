@@ -1,8 +1,8 @@
 package net.kozelka.contentcheck.conflict.impl;
 
+import java.util.ArrayList;
 import java.util.Collection;
-import java.util.LinkedHashMap;
-import java.util.Map;
+import java.util.List;
 import net.kozelka.contentcheck.conflict.api.ArchiveConflict;
 import net.kozelka.contentcheck.conflict.model.ArchiveInfo;
 import net.kozelka.contentcheck.conflict.model.ResourceInfo;
@@ -10,33 +10,80 @@ import net.kozelka.contentcheck.conflict.model.ResourceInfo;
 /**
  * Collects unique {@link ArchiveConflict conflicts}
  * between pairs of {@link ArchiveInfo archives}.
+ * <p>Pairs are looked up by dense ids of both archives, assigned by the caller and combined into one <code>long</code>,
+ * in an open-addressing table; so an overlap on an already known pair allocates nothing.</p>
  *
  * @author Petr Kozelka
  */
 class ConflictCollector {
-    private final Map<String, ArchiveConflict> conflicts = new LinkedHashMap<String, ArchiveConflict>();
-
-    ArchiveConflict save(ArchiveConflict conflict) {
-        final String key = conflict.getThisArchive().getKey() + "::" + conflict.getThatArchive().getKey();
-        final ArchiveConflict existingConflict = conflicts.get(key);
-        if (existingConflict != null) {
-            return existingConflict;
-        }
-        conflicts.put(key, conflict);
-        return conflict;
-    }
+    /**
+     * Conflicts in order of their creation.
+     */
+    private final List<ArchiveConflict> conflicts = new ArrayList<ArchiveConflict>();
+    private long[] pairKeys = new long[64];
+    /**
+     * Hash slots holding <code>index + 1</code> into {@link #conflicts}, zero for an empty slot; at most half full.
+     */
+    private int[] pairSlots = new int[64];
 
     public Collection<? extends ArchiveConflict> getAll() {
-        return conflicts.values();
+        return conflicts;
     }
 
-    public ArchiveConflict addOverlap(ArchiveInfo thisArchive, ArchiveInfo thatArchive, ResourceInfo conflictingResource, boolean isDuplicate) {
-        ArchiveConflict archiveConflict = new ArchiveConflict();
-        archiveConflict.setThisArchive(thisArchive);
-        archiveConflict.setThatArchive(thatArchive);
-        archiveConflict = save(archiveConflict);
+    /**
+     * @param thisId id of <code>thisArchive</code>, non-negative and unique to it
+     * @param thatId id of <code>thatArchive</code>, non-negative and unique to it
+     */
+    public ArchiveConflict addOverlap(int thisId, ArchiveInfo thisArchive, int thatId, ArchiveInfo thatArchive,
+                                      ResourceInfo conflictingResource, boolean isDuplicate) {
+        if (thisId < 0 || thatId < 0) {
+            throw new IllegalArgumentException(String.format("Archive ids must not be negative: %d, %d", thisId, thatId));
+        }
+        final long key = ((long) thisId << 32) | thatId;
+        final int mask = pairSlots.length - 1;
+        int slot = spread(key) & mask;
+        ArchiveConflict archiveConflict = null;
+        while (pairSlots[slot] != 0) {
+            if (pairKeys[slot] == key) {
+                archiveConflict = conflicts.get(pairSlots[slot] - 1);
+                break;
+            }
+            slot = (slot + 1) & mask;
+        }
+        if (archiveConflict == null) {
+            archiveConflict = new ArchiveConflict();
+            archiveConflict.setThisArchive(thisArchive);
+            archiveConflict.setThatArchive(thatArchive);
+            conflicts.add(archiveConflict);
+            pairKeys[slot] = key;
+            pairSlots[slot] = conflicts.size();
+            if (conflicts.size() * 2 > pairSlots.length) {
+                rehash();
+            }
+        }
         archiveConflict.addOverlap(conflictingResource, isDuplicate);
         return archiveConflict;
     }
 
+    private void rehash() {
+        final long[] oldKeys = pairKeys;
+        final int[] oldSlots = pairSlots;
+        pairKeys = new long[oldKeys.length * 2];
+        pairSlots = new int[oldSlots.length * 2];
+        final int mask = pairSlots.length - 1;
+        for (int i = 0; i < oldSlots.length; i++) {
+            if (oldSlots[i] == 0) continue;
+            int slot = spread(oldKeys[i]) & mask;
+            while (pairSlots[slot] != 0) {
+                slot = (slot + 1) & mask;
+            }
+            pairKeys[slot] = oldKeys[i];
+            pairSlots[slot] = oldSlots[i];
+        }
+    }
+
+    private static int spread(long key) {
+        final long h = key * 0x9E3779B97F4A7C15L;
+        return (int) (h ^ (h >>> 32));
+    }
 }
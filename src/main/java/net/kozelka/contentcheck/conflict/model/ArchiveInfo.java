@@ -1,18 +1,37 @@
 package net.kozelka.contentcheck.conflict.model;
 
-import java.util.ArrayList;
-import java.util.Collections;
+import java.util.AbstractList;
+import java.util.Arrays;
 import java.util.List;
 
 /**
- * Represents one classpath element, typically an archive
+ * Represents one classpath element, typically an archive.
+ * <p>Resources are stored in columns: uri id in the {@link SymbolTable symbol table}, CRC and size.
+ * {@link ResourceInfo} objects are only created on demand, see {@link #getResource(int)}.</p>
  * @author Petr Kozelka
  */
 public class ArchiveInfo {
     private String key;
+    private final SymbolTable symbols;
     private int classCount;
     private int resourceCount;
-    private final List<ResourceInfo> resources = new ArrayList<ResourceInfo>();
+    private int[] uriIds = new int[16];
+    private long[] crcs = new long[16];
+    private long[] sizes = new long[16];
+
+    /**
+     * Creates archive with its own symbol table.
+     */
+    public ArchiveInfo() {
+        this(new SymbolTable());
+    }
+
+    /**
+     * @param symbols symbol table for resource uris, usually shared with other archives
+     */
+    public ArchiveInfo(SymbolTable symbols) {
+        this.symbols = symbols;
+    }
 
     /**
      * @return name of the archive, in presentation-specific form
@@ -25,10 +44,6 @@ public class ArchiveInfo {
         this.key = key;
     }
 
-    public void setClassCount(int classCount) {
-        this.classCount = classCount;
-    }
-
     /**
      * @return number of <code>.class</code> resources
      */
@@ -51,23 +66,46 @@ public class ArchiveInfo {
         return key != null ? key.hashCode() : 0;
     }
 
+    public SymbolTable getSymbols() {
+        return symbols;
+    }
+
     /**
-     * @return (read-only) list of resources in the archive
-     * @see #addResource(ResourceInfo)
+     * @return (read-only) list of resources in the archive; each element is created on access
+     * @see #addResource(String, long, long)
      */
     public List<ResourceInfo> getResources() {
-        return Collections.unmodifiableList(resources);
+        return new AbstractList<ResourceInfo>() {
+            @Override
+            public ResourceInfo get(int index) {
+                return getResource(index);
+            }
+
+            @Override
+            public int size() {
+                return resourceCount;
+            }
+        };
     }
 
     /**
      * Adds resource to the list of archive resources.
-     * @param resource -
+     * @param uri path of the resource inside the archive
+     * @param crc CRC-32 of the resource content
+     * @param size uncompressed size of the resource
      */
-    public void addResource(ResourceInfo resource) {
-        resources.add(resource);
+    public void addResource(String uri, long crc, long size) {
+        if (resourceCount == uriIds.length) {
+            final int capacity = resourceCount * 2;
+            uriIds = Arrays.copyOf(uriIds, capacity);
+            crcs = Arrays.copyOf(crcs, capacity);
+            sizes = Arrays.copyOf(sizes, capacity);
+        }
+        uriIds[resourceCount] = symbols.intern(uri);
+        crcs[resourceCount] = crc;
+        sizes[resourceCount] = size;
         resourceCount++;
-        final String name = resource.getUri();
-        if (name.endsWith(".class")) {
+        if (uri.endsWith(".class")) {
             classCount++;
         }
     }
@@ -76,8 +114,35 @@ public class ArchiveInfo {
         return resourceCount;
     }
 
-    public void setResourceCount(int resourceCount) {
-        this.resourceCount = resourceCount;
+    /**
+     * @param index resource position, less than {@link #getResourceCount()}
+     * @return id of the resource uri in {@link #getSymbols()}
+     */
+    public int getUriId(int index) {
+        return uriIds[index];
+    }
+
+    public String getUri(int index) {
+        return symbols.get(uriIds[index]);
+    }
+
+    public long getCrc(int index) {
+        return crcs[index];
+    }
+
+    public long getSize(int index) {
+        return sizes[index];
+    }
+
+    /**
+     * @param index resource position, less than {@link #getResourceCount()}
+     * @return new view of the resource
+     */
+    public ResourceInfo getResource(int index) {
+        if (index < 0 || index >= resourceCount) {
+            throw new IndexOutOfBoundsException("Index: " + index + ", Size: " + resourceCount);
+        }
+        return new ResourceInfo(getUri(index), crcs[index], sizes[index]);
     }
 
     @Override
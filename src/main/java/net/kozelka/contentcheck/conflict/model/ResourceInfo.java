@@ -2,24 +2,43 @@ package net.kozelka.contentcheck.conflict.model;
 
 /**
  * Represents one resource in the classpath element - for instance, a class file.
+ * Instances are only views of {@link ArchiveInfo} columns, created on demand for reporting.
  */
 public class ResourceInfo {
-    private String uri;
-    private String hash;
+    private final String uri;
+    private final long crc;
+    private final long size;
+
+    public ResourceInfo(String uri, long crc, long size) {
+        this.uri = uri;
+        this.crc = crc;
+        this.size = size;
+    }
 
     public String getUri() {
         return uri;
     }
 
-    public void setUri(String uri) {
-        this.uri = uri;
+    public long getCrc() {
+        return crc;
     }
 
-    public void setHash(String hash) {
-        this.hash = hash;
+    public long getSize() {
+        return size;
     }
 
+    /**
+     * @return content identification, in form <code>crc=...&amp;sz=...</code>
+     */
     public String getHash() {
-        return hash;
+        return hash(crc, size);
+    }
+
+    /**
+     * @return content identification of a resource with given CRC and size
+     * @see #getHash()
+     */
+    public static String hash(long crc, long size) {
+        return "crc=" + crc + "&sz=" + size;
     }
 }
@@ -0,0 +1,85 @@
+package net.kozelka.contentcheck.conflict.model;
+
+import java.util.Arrays;
+
+/**
+ * Interns strings, assigning each distinct one a dense int id starting with zero.
+ * Shared by archives loaded together, so that a resource path present in many of them is kept only once,
+ * and can be used as array index instead of hashing it again.
+ * <p>Open addressing over an int array keeps one reference and one int per symbol, without boxing.
+ * Not thread-safe.</p>
+ *
+ * @author Petr Kozelka
+ */
+public final class SymbolTable {
+    private String[] symbols = new String[256];
+    private int size;
+    /**
+     * Hash slots holding <code>id + 1</code>, zero for an empty slot; at most half full.
+     */
+    private int[] slots = new int[512];
+
+    /**
+     * @param symbol the string to intern
+     * @return id of the symbol; the same for equal strings
+     */
+    public int intern(String symbol) {
+        final int mask = slots.length - 1;
+        int slot = spread(symbol.hashCode()) & mask;
+        while (slots[slot] != 0) {
+            final int id = slots[slot] - 1;
+            if (symbols[id].equals(symbol)) {
+                return id;
+            }
+            slot = (slot + 1) & mask;
+        }
+        final int id = size++;
+        if (id == symbols.length) {
+            symbols = Arrays.copyOf(symbols, id * 2);
+        }
+        symbols[id] = symbol;
+        slots[slot] = id + 1;
+        if (size * 2 > slots.length) {
+            rehash();
+        }
+        return id;
+    }
+
+    /**
+     * @param id id returned by {@link #intern}
+     * @return the interned string
+     */
+    public String get(int id) {
+        if (id < 0 || id >= size) {
+            throw new IndexOutOfBoundsException("Symbol id: " + id + ", Size: " + size);
+        }
+        return symbols[id];
+    }
+
+    /**
+     * @return number of distinct symbols, which is also the first unused id
+     */
+    public int size() {
+        return size;
+    }
+
+    private void rehash() {
+        slots = new int[slots.length * 2];
+        final int mask = slots.length - 1;
+        for (int id = 0; id < size; id++) {
+            int slot = spread(symbols[id].hashCode()) & mask;
+            while (slots[slot] != 0) {
+                slot = (slot + 1) & mask;
+            }
+            slots[slot] = id + 1;
+        }
+    }
+
+    /**
+     * Scrambles the hash code, so that linear probing does not cluster on similar ones.
+     */
+    private static int spread(int hashCode) {
+        final int h = hashCode * 0x9E3779B9;
+        return h ^ (h >>> 16);
+    }
+}
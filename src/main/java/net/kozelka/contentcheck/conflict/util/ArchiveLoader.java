@@ -2,14 +2,9 @@ package net.kozelka.contentcheck.conflict.util;
 
 import java.io.File;
 import java.io.IOException;
-import java.io.InputStream;
-import java.util.ArrayList;
 import java.util.List;
-import java.util.zip.ZipEntry;
-import java.util.zip.ZipInputStream;
 import net.kozelka.contentcheck.conflict.model.ArchiveInfo;
-import net.kozelka.contentcheck.conflict.model.ResourceInfo;
-import net.kozelka.contentcheck.introspection.ContentIntrospector;
+import net.kozelka.contentcheck.conflict.model.SymbolTable;
 
 /**
  * Utilities helping to load archive information from the filesystem
@@ -18,42 +13,36 @@ import net.kozelka.contentcheck.introspection.ContentIntrospector;
  */
 public class ArchiveLoader {
     public static List<ArchiveInfo> loadWar(File war) throws IOException {
-        final List<ArchiveInfo> archives = new ArrayList<ArchiveInfo>();
-        final ContentIntrospector ci = new ContentIntrospector();
-        ci.setSourceFile(war);
-        ci.setEntryContentFilter(new ContentIntrospector.EntryContentFilter() {
-            public boolean accept(String entryName, InputStream entryContentStream) throws IOException {
-                if (entryName.startsWith("WEB-INF/lib/") && entryName.endsWith(".jar")) {
-                    final ZipInputStream zis = new ZipInputStream(entryContentStream);
-                    archives.add(loadInnerArchive(zis, entryName));
-                }
-                //TODO: add support for WEB-INF/classes as another resource
-                return false;
-            }
-        });
-        ci.walk();
-        return archives;
+        // resource uris repeat a lot between libraries; keep each just once
+        return loadWar(war, new SymbolTable());
     }
 
-    private static ArchiveInfo loadInnerArchive(ZipInputStream zis, String archiveName) throws IOException {
-        final ArchiveInfo archive = new ArchiveInfo();
-        archive.setKey(archiveName);
-        ZipEntry entry = zis.getNextEntry();
-        while (entry != null) {
-            if (!entry.isDirectory()) {
-                processResource(archive, entry);
-            }
-            //
-            zis.closeEntry();
-            entry = zis.getNextEntry();
-        }
-        return archive;
+    /**
+     * @param war the war file
+     * @param symbols symbol table for resource uris, shared by all loaded archives
+     * @return the classpath elements of the war
+     * @see #loadClasspath(File, SymbolTable, int)
+     */
+    public static List<ArchiveInfo> loadWar(File war, SymbolTable symbols) throws IOException {
+        return loadClasspath(war, symbols, 1);
     }
 
-    private static void processResource(ArchiveInfo archive, ZipEntry entry) {
-        final ResourceInfo resource = new ResourceInfo();
-        resource.setUri(entry.getName());
-        resource.setHash(String.format("crc=%s&sz=%s", entry.getCrc(), entry.getSize()));
-        archive.addResource(resource);
+    /**
+     * Loads all classpath elements of a war or an ear, in one pass over it.
+     * Archives stored without compression are read in place, from their own central directory, so that no class is inflated;
+     * compressed ones are streamed. Exploded wars and ears are read from the directory.
+     * <ul>
+     *     <li>war: <code>WEB-INF/classes</code> and each <code>WEB-INF/lib/*.jar</code></li>
+     *     <li>ear: each <code>lib/*.jar</code>, each jar module, and the elements of each war module,
+     *     keyed like <code>web.war!/WEB-INF/lib/x.jar</code></li>
+     * </ul>
+     * An ear is recognized by its extension, or by <code>META-INF/application.xml</code> when it is a directory.
+     * @param source the war or ear file, or exploded directory
+     * @param symbols symbol table for resource uris, shared by all loaded archives
+     * @param threads how many classpath elements to load at once; the result does not depend on it
+     * @return the classpath elements, in their order within the source
+     */
+    public static List<ArchiveInfo> loadClasspath(File source, SymbolTable symbols, int threads) throws IOException {
+        return new ClasspathLoader(source).load(symbols, threads);
     }
 }
@@ -0,0 +1,600 @@
+package net.kozelka.contentcheck.conflict.util;
+
+import java.io.BufferedInputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FilterInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InterruptedIOException;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.zip.CRC32;
+import java.util.zip.Inflater;
+import java.util.zip.InflaterInputStream;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipException;
+import java.util.zip.ZipInputStream;
+import net.kozelka.contentcheck.conflict.model.ArchiveInfo;
+import net.kozelka.contentcheck.conflict.model.SymbolTable;
+import net.kozelka.contentcheck.introspection.ContentIntrospector;
+import net.kozelka.contentcheck.introspection.ZipCentralDirectoryReader;
+
+/**
+ * Builds the classpath model of a war or an ear, in one pass over its central directory:
+ * one {@link ArchiveInfo} per classpath element.
+ * <ul>
+ *     <li>war: <code>WEB-INF/classes</code> and each <code>WEB-INF/lib/*.jar</code></li>
+ *     <li>ear: each <code>lib/*.jar</code>, each jar module, and the elements of each war module,
+ *     keyed like <code>web.war!/WEB-INF/lib/x.jar</code></li>
+ * </ul>
+ * <p>Archives stored without compression, like the usual libraries and war modules, are read in place:
+ * their own central directory is located within the outer file and read through positional reads, so that no class is inflated.
+ * Compressed ones are streamed from the outer file. Exploded wars and ears are read from the directory.</p>
+ * <p>Loading of elements is planned during the pass, and then performed by given number of threads.
+ * Loaded resources are only interned into the symbol table by the calling thread, element after element;
+ * so the result, including symbol ids, does not depend on the number of threads.</p>
+ */
+class ClasspathLoader {
+    private static final String CLASSES_DIR = "WEB-INF/classes/";
+    private static final String WAR_LIB_DIR = "WEB-INF/lib/";
+    private static final String EAR_LIB_DIR = "lib/";
+
+    private static final int OTHER = 0;
+    private static final int CLASS_RESOURCE = 1;
+    private static final int LIBRARY = 2;
+    private static final int WAR_MODULE = 3;
+
+    private final File source;
+    private final List<RandomAccessFile> openFiles = new ArrayList<RandomAccessFile>();
+    private final List<Slot> slots = new ArrayList<Slot>();
+
+    ClasspathLoader(File source) {
+        this.source = source;
+    }
+
+    List<ArchiveInfo> load(SymbolTable symbols, int threads) throws IOException {
+        try {
+            final boolean ear = source.getName().endsWith(".ear") || new File(source, "META-INF/application.xml").isFile();
+            if (source.isDirectory()) {
+                scanDirectory(source, "", "", ear, new ClassFilesSlot(CLASSES_DIR));
+            } else {
+                scanArchive(open(source), "", ear);
+            }
+            return resolve(symbols, threads);
+        } finally {
+            for (RandomAccessFile raf : openFiles) {
+                raf.close();
+            }
+        }
+    }
+
+    private FileChannel open(File file) throws IOException {
+        final RandomAccessFile raf = new RandomAccessFile(file, "r");
+        openFiles.add(raf);
+        return raf.getChannel();
+    }
+
+    /**
+     * @param name path within the war or ear
+     * @param ear true for ear layout, false for war layout
+     * @return what classpath element the entry is, or belongs to
+     */
+    private static int classify(String name, boolean ear) {
+        if (ear) {
+            if (name.indexOf('/') < 0) {
+                if (name.endsWith(".war")) return WAR_MODULE;
+                // ejb and application client modules
+                if (name.endsWith(".jar")) return LIBRARY;
+            } else if (name.startsWith(EAR_LIB_DIR) && name.endsWith(".jar")) {
+                return LIBRARY;
+            }
+            return OTHER;
+        }
+        if (name.startsWith(CLASSES_DIR)) return CLASS_RESOURCE;
+        if (name.startsWith(WAR_LIB_DIR) && name.endsWith(".jar")) return LIBRARY;
+        return OTHER;
+    }
+
+    private void scanArchive(FileChannel channel, String prefix, boolean ear) throws IOException {
+        scanArchive(channel, new ZipCentralDirectoryReader(channel), prefix, ear);
+    }
+
+    private void scanArchive(FileChannel channel, ZipCentralDirectoryReader reader, String prefix, boolean ear) throws IOException {
+        final ClassesSlot classes = new ClassesSlot(prefix + CLASSES_DIR);
+        while (reader.next()) {
+            if (reader.isDirectory()) continue;
+            final String name = reader.getName();
+            switch (classify(name, ear)) {
+                case CLASS_RESOURCE:
+                    classes.add(name.substring(CLASSES_DIR.length()), reader.getCrc(), reader.getSize());
+                    break;
+                case LIBRARY:
+                    slots.add(new LibrarySlot(prefix + name, new EntryLocation(channel, reader)));
+                    break;
+                case WAR_MODULE:
+                    final String modulePrefix = prefix + name + ContentIntrospector.NESTED_SEPARATOR;
+                    final EntryLocation location = new EntryLocation(channel, reader);
+                    final ZipCentralDirectoryReader moduleReader = location.openStoredArchive();
+                    if (moduleReader != null) {
+                        scanArchive(channel, moduleReader, modulePrefix, false);
+                    } else {
+                        slots.add(new StreamedWarSlot(modulePrefix, location));
+                    }
+                    break;
+                default:
+            }
+        }
+    }
+
+    private void scanDirectory(File directory, String prefix, String relative, boolean ear, ClassFilesSlot classes) throws IOException {
+        final String[] names = directory.list();
+        if (names == null) return;
+        Arrays.sort(names);
+        for (String childName : names) {
+            final File child = new File(directory, childName);
+            final String name = relative + childName;
+            if (child.isDirectory()) {
+                if (ear && relative.isEmpty() && childName.endsWith(".war")) {
+                    // exploded war module
+                    final String modulePrefix = prefix + name + ContentIntrospector.NESTED_SEPARATOR;
+                    scanDirectory(child, modulePrefix, "", false, new ClassFilesSlot(modulePrefix + CLASSES_DIR));
+                } else {
+                    scanDirectory(child, prefix, name + "/", ear, classes);
+                }
+                continue;
+            }
+            switch (classify(name, ear)) {
+                case CLASS_RESOURCE:
+                    classes.add(name.substring(CLASSES_DIR.length()), child);
+                    break;
+                case LIBRARY:
+                    slots.add(new LibraryFileSlot(prefix + name, child));
+                    break;
+                case WAR_MODULE:
+                    scanArchive(open(child), prefix + name + ContentIntrospector.NESTED_SEPARATOR, false);
+                    break;
+                default:
+            }
+        }
+    }
+
+    private List<ArchiveInfo> resolve(SymbolTable symbols, int threads) throws IOException {
+        final List<ArchiveInfo> result = new ArrayList<ArchiveInfo>();
+        if (threads <= 1 || slots.size() <= 1) {
+            for (Slot slot : slots) {
+                intern(slot.load(), symbols, result);
+            }
+            return result;
+        }
+        final ExecutorService executor = Executors.newFixedThreadPool(Math.min(threads, slots.size()));
+        try {
+            final List<Future<List<LoadedArchive>>> futures = new ArrayList<Future<List<LoadedArchive>>>(slots.size());
+            for (final Slot slot : slots) {
+                futures.add(executor.submit(new Callable<List<LoadedArchive>>() {
+                    @Override
+                    public List<LoadedArchive> call() throws IOException {
+                        return slot.load();
+                    }
+                }));
+            }
+            for (int i = 0; i < slots.size(); i++) {
+                intern(getArchives(slots.get(i), futures.get(i)), symbols, result);
+                // loaded columns are not needed once interned
+                futures.set(i, null);
+            }
+        } finally {
+            executor.shutdownNow();
+        }
+        return result;
+    }
+
+    private static void intern(List<LoadedArchive> loaded, SymbolTable symbols, List<ArchiveInfo> result) {
+        for (LoadedArchive archive : loaded) {
+            result.add(archive.toArchiveInfo(symbols));
+        }
+    }
+
+    private static List<LoadedArchive> getArchives(Slot slot, Future<List<LoadedArchive>> archives) throws IOException {
+        try {
+            return archives.get();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new InterruptedIOException("Interrupted while loading " + slot);
+        } catch (ExecutionException e) {
+            final Throwable cause = e.getCause();
+            if (cause instanceof IOException) throw (IOException) cause;
+            if (cause instanceof RuntimeException) throw (RuntimeException) cause;
+            if (cause instanceof Error) throw (Error) cause;
+            final IOException ioe = new IOException("Cannot load " + slot);
+            ioe.initCause(cause);
+            throw ioe;
+        }
+    }
+
+    /**
+     * Reads the archive from the stream, taking CRC and size of each entry after reading it through,
+     * as entries written with data descriptor only know them then.
+     * The stream is not closed.
+     */
+    static LoadedArchive loadInnerArchive(ZipInputStream zis, String archiveName) throws IOException {
+        final LoadedArchive archive = new LoadedArchive(archiveName);
+        ZipEntry entry = zis.getNextEntry();
+        while (entry != null) {
+            zis.closeEntry();
+            if (!entry.isDirectory()) {
+                archive.add(entry.getName(), entry.getCrc(), entry.getSize());
+            }
+            entry = zis.getNextEntry();
+        }
+        return archive;
+    }
+
+    /**
+     * Reads the library from its central directory in place if possible; streams it otherwise.
+     */
+    private static LoadedArchive loadLibrary(String key, EntryLocation location) throws IOException {
+        final ZipCentralDirectoryReader reader = location.openStoredArchive();
+        if (reader != null) {
+            final LoadedArchive archive = new LoadedArchive(key);
+            while (reader.next()) {
+                if (!reader.isDirectory()) {
+                    archive.add(reader.getName(), reader.getCrc(), reader.getSize());
+                }
+            }
+            return archive;
+        }
+        // compressed, or without readable central directory
+        final ZipInputStream zis = location.openStream();
+        try {
+            return loadInnerArchive(zis, key);
+        } finally {
+            zis.close();
+        }
+    }
+
+    /**
+     * Reads the elements of a war from the stream, in their order.
+     */
+    private static List<LoadedArchive> streamWar(ZipInputStream zis, String prefix) throws IOException {
+        final List<LoadedArchive> archives = new ArrayList<LoadedArchive>();
+        LoadedArchive classes = null;
+        ZipEntry entry = zis.getNextEntry();
+        while (entry != null) {
+            final String name = entry.getName();
+            if (!entry.isDirectory()) {
+                switch (classify(name, false)) {
+                    case CLASS_RESOURCE:
+                        zis.closeEntry();
+                        if (classes == null) {
+                            classes = new LoadedArchive(prefix + CLASSES_DIR.substring(0, CLASSES_DIR.length() - 1));
+                            archives.add(classes);
+                        }
+                        classes.add(name.substring(CLASSES_DIR.length()), entry.getCrc(), entry.getSize());
+                        break;
+                    case LIBRARY:
+                        // closing the library releases its inflater, but must leave the war stream open
+                        final ZipInputStream library = new ZipInputStream(new FilterInputStream(zis) {
+                            @Override
+                            public void close() {
+                            }
+                        });
+                        try {
+                            archives.add(loadInnerArchive(library, prefix + name));
+                        } finally {
+                            library.close();
+                        }
+                        break;
+                    default:
+                }
+            }
+            entry = zis.getNextEntry();
+        }
+        return archives;
+    }
+
+    /**
+     * Loading of one or more classpath elements, planned during the pass.
+     */
+    private interface Slot {
+        /**
+         * Can be called by any thread.
+         * @return the loaded elements
+         */
+        List<LoadedArchive> load() throws IOException;
+    }
+
+    /**
+     * Resources of one classpath element, in columns like {@link ArchiveInfo}, but with uris not interned yet.
+     */
+    static final class LoadedArchive {
+        final String key;
+        private int count;
+        private String[] uris = new String[16];
+        private long[] crcs = new long[16];
+        private long[] sizes = new long[16];
+
+        LoadedArchive(String key) {
+            this.key = key;
+        }
+
+        void add(String uri, long crc, long size) {
+            if (count == uris.length) {
+                uris = Arrays.copyOf(uris, count * 2);
+                crcs = Arrays.copyOf(crcs, count * 2);
+                sizes = Arrays.copyOf(sizes, count * 2);
+            }
+            // strings cache their hash, so that interning in the calling thread does not compute it
+            uri.hashCode();
+            uris[count] = uri;
+            crcs[count] = crc;
+            sizes[count] = size;
+            count++;
+        }
+
+        int size() {
+            return count;
+        }
+
+        ArchiveInfo toArchiveInfo(SymbolTable symbols) {
+            final ArchiveInfo result = new ArchiveInfo(symbols);
+            result.setKey(key);
+            for (int i = 0; i < count; i++) {
+                result.addResource(uris[i], crcs[i], sizes[i]);
+            }
+            return result;
+        }
+    }
+
+    /**
+     * Position of an archive entry within a file.
+     */
+    private static class EntryLocation {
+        final FileChannel channel;
+        final int method;
+        final long dataOffset;
+        final long compressedSize;
+
+        EntryLocation(FileChannel channel, ZipCentralDirectoryReader reader) throws IOException {
+            this.channel = channel;
+            this.method = reader.getMethod();
+            this.dataOffset = reader.getDataOffset();
+            this.compressedSize = reader.getCompressedSize();
+        }
+
+        /**
+         * Location of a whole file.
+         */
+        EntryLocation(FileChannel channel) throws IOException {
+            this.channel = channel;
+            this.method = ZipEntry.STORED;
+            this.dataOffset = 0;
+            this.compressedSize = channel.size();
+        }
+
+        /**
+         * @return reader of the central directory of the entry, or null if it is compressed or its central directory cannot be read
+         */
+        ZipCentralDirectoryReader openStoredArchive() throws IOException {
+            if (method != ZipEntry.STORED) {
+                return null;
+            }
+            try {
+                return new ZipCentralDirectoryReader(channel, dataOffset, compressedSize);
+            } catch (ZipException e) {
+                return null;
+            }
+        }
+
+        ZipInputStream openStream() throws IOException {
+            switch (method) {
+                case ZipEntry.STORED:
+                    return new ZipInputStream(new BufferedInputStream(new RangeInputStream(channel, dataOffset, compressedSize), 64 * 1024));
+                case ZipEntry.DEFLATED:
+                    // inflater without zlib wrapping may need one byte beyond the compressed data
+                    final InputStream compressed = new BufferedInputStream(new RangeInputStream(channel, dataOffset, compressedSize + 1), 64 * 1024);
+                    return new ZipInputStream(new InflaterInputStream(compressed, new Inflater(true)) {
+                        @Override
+                        public void close() throws IOException {
+                            try {
+                                super.close();
+                            } finally {
+                                inf.end();
+                            }
+                        }
+                    });
+                default:
+                    throw new ZipException("Unsupported compression method " + method);
+            }
+        }
+    }
+
+    private static class LibrarySlot implements Slot {
+        private final String key;
+        private final EntryLocation location;
+
+        LibrarySlot(String key, EntryLocation location) {
+            this.key = key;
+            this.location = location;
+        }
+
+        public List<LoadedArchive> load() throws IOException {
+            return Collections.singletonList(loadLibrary(key, location));
+        }
+
+        @Override
+        public String toString() {
+            return key;
+        }
+    }
+
+    /**
+     * Library file of an exploded war or ear; opened only while loading it.
+     */
+    private static class LibraryFileSlot implements Slot {
+        private final String key;
+        private final File file;
+
+        LibraryFileSlot(String key, File file) {
+            this.key = key;
+            this.file = file;
+        }
+
+        public List<LoadedArchive> load() throws IOException {
+            final RandomAccessFile raf = new RandomAccessFile(file, "r");
+            try {
+                return Collections.singletonList(loadLibrary(key, new EntryLocation(raf.getChannel())));
+            } finally {
+                raf.close();
+            }
+        }
+
+        @Override
+        public String toString() {
+            return key;
+        }
+    }
+
+    private static class StreamedWarSlot implements Slot {
+        private final String prefix;
+        private final EntryLocation location;
+
+        StreamedWarSlot(String prefix, EntryLocation location) {
+            this.prefix = prefix;
+            this.location = location;
+        }
+
+        public List<LoadedArchive> load() throws IOException {
+            final ZipInputStream zis = location.openStream();
+            try {
+                return streamWar(zis, prefix);
+            } finally {
+                zis.close();
+            }
+        }
+
+        @Override
+        public String toString() {
+            return prefix;
+        }
+    }
+
+    /**
+     * <code>WEB-INF/classes</code> of an archive, collected from its central directory during the pass.
+     * Takes its place among the slots with the first resource.
+     */
+    private class ClassesSlot implements Slot {
+        private final LoadedArchive classes;
+
+        ClassesSlot(String path) {
+            classes = new LoadedArchive(path.substring(0, path.length() - 1));
+        }
+
+        void add(String uri, long crc, long size) {
+            if (classes.size() == 0) {
+                slots.add(this);
+            }
+            classes.add(uri, crc, size);
+        }
+
+        public List<LoadedArchive> load() {
+            return Collections.singletonList(classes);
+        }
+
+        @Override
+        public String toString() {
+            return classes.key;
+        }
+    }
+
+    /**
+     * <code>WEB-INF/classes</code> of an exploded war, whose files are read to compute their CRC.
+     * Takes its place among the slots with the first file.
+     */
+    private class ClassFilesSlot implements Slot {
+        private final String key;
+        private final List<String> uris = new ArrayList<String>();
+        private final List<File> files = new ArrayList<File>();
+
+        ClassFilesSlot(String path) {
+            key = path.substring(0, path.length() - 1);
+        }
+
+        void add(String uri, File file) {
+            if (files.isEmpty()) {
+                slots.add(this);
+            }
+            uris.add(uri);
+            files.add(file);
+        }
+
+        public List<LoadedArchive> load() throws IOException {
+            final LoadedArchive classes = new LoadedArchive(key);
+            final byte[] buffer = new byte[8192];
+            final CRC32 crc = new CRC32();
+            for (int i = 0; i < files.size(); i++) {
+                crc.reset();
+                long size = 0;
+                final InputStream is = new FileInputStream(files.get(i));
+                try {
+                    int n;
+                    while ((n = is.read(buffer)) >= 0) {
+                        crc.update(buffer, 0, n);
+                        size += n;
+                    }
+                } finally {
+                    is.close();
+                }
+                classes.add(uris.get(i), crc.getValue(), size);
+            }
+            return Collections.singletonList(classes);
+        }
+
+        @Override
+        public String toString() {
+            return key;
+        }
+    }
+
+    /**
+     * Reads a range of a file through positional reads, so that several streams can share the channel.
+     */
+    private static class RangeInputStream extends InputStream {
+        private final FileChannel channel;
+        private long position;
+        private final long end;
+
+        RangeInputStream(FileChannel channel, long start, long length) {
+            this.channel = channel;
+            this.position = start;
+            this.end = start + length;
+        }
+
+        @Override
+        public int read() throws IOException {
+            final byte[] b = new byte[1];
+            return read(b, 0, 1) < 0 ? -1 : b[0] & 0xff;
+        }
+
+        @Override
+        public int read(byte[] b, int off, int len) throws IOException {
+            if (len == 0) return 0;
+            if (position >= end) return -1;
+            final int n = channel.read(ByteBuffer.wrap(b, off, (int) Math.min(len, end - position)), position);
+            if (n > 0) {
+                position += n;
+            }
+            return n;
+        }
+    }
+}
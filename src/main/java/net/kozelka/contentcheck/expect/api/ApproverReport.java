@@ -1,5 +1,7 @@
 package net.kozelka.contentcheck.expect.api;
 
+import java.util.List;
+import java.util.Map;
 import java.util.Set;
 import net.kozelka.contentcheck.expect.model.ActualEntry;
 import net.kozelka.contentcheck.expect.model.ApprovedEntry;
@@ -12,6 +14,9 @@ public class ApproverReport {
     private final Set<ActualEntry> actualEntries;
     private Set<ActualEntry> unexpectedEntries;
     private Set<ApprovedEntry> missingEntries;
+    private Map<ApprovedEntry, Integer> ruleHits;
+    private Map<ActualEntry, List<ApprovedEntry>> multiplyMatchedEntries;
+    private Set<ApprovedEntry> deadRules;
 
     public ApproverReport(Set<ApprovedEntry> approvedEntries, Set<ActualEntry> archiveContent) {
         super();
@@ -48,4 +53,40 @@ public class ApproverReport {
     public void setMissingEntries(Set<ApprovedEntry> missingEntries) {
         this.missingEntries = missingEntries;
     }
+
+    /**
+     * @return number of actual entries matched by each approved entry, in the order of approved entries
+     */
+    public Map<ApprovedEntry, Integer> getRuleHits() {
+        return ruleHits;
+    }
+
+    public void setRuleHits(Map<ApprovedEntry, Integer> ruleHits) {
+        this.ruleHits = ruleHits;
+    }
+
+    /**
+     * @return actual entries matched by more than one approved entry, with all these approved entries
+     */
+    public Map<ActualEntry, List<ApprovedEntry>> getMultiplyMatchedEntries() {
+        return multiplyMatchedEntries;
+    }
+
+    public void setMultiplyMatchedEntries(Map<ActualEntry, List<ApprovedEntry>> multiplyMatchedEntries) {
+        this.multiplyMatchedEntries = multiplyMatchedEntries;
+    }
+
+    /**
+     * Dead rules match some actual entries, but each of these is also matched by another rule.
+     * Any one of them can be removed without making an entry unexpected; removing several at once needs care,
+     * as they may be covering each other.
+     * @return approved entries that do not exclusively match any actual entry; missing entries are not included
+     */
+    public Set<ApprovedEntry> getDeadRules() {
+        return deadRules;
+    }
+
+    public void setDeadRules(Set<ApprovedEntry> deadRules) {
+        this.deadRules = deadRules;
+    }
 }
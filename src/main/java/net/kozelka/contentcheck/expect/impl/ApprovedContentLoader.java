@@ -0,0 +1,74 @@
+package net.kozelka.contentcheck.expect.impl;
+
+import java.io.BufferedReader;
+import java.io.File;
+import java.io.FileReader;
+import java.io.IOException;
+import java.util.HashMap;
+import java.util.LinkedHashSet;
+import java.util.Map;
+import java.util.Set;
+import net.kozelka.contentcheck.expect.model.ApprovedEntry;
+import net.kozelka.contentcheck.util.EventSink;
+
+/**
+ * Loads approved content listing, in linear time.
+ * Each non-empty line that is not a comment (starting with <code>#</code>) becomes one {@link ApprovedEntry}, in the order of the file.
+ * Repeated lines are reported, but still loaded; an invalid rule fails the load, with its line number.
+ *
+ * @author Petr Kozelka
+ */
+public class ApprovedContentLoader {
+    private final EventSink<Events> events = EventSink.create(Events.class);
+
+    public EventSink<Events> getEvents() {
+        return events;
+    }
+
+    public Set<ApprovedEntry> load(File approvedContentFile) throws IOException {
+        final Set<ApprovedEntry> approvedContent = new LinkedHashSet<ApprovedEntry>();
+        // maps each rule to the number of line where it first occurred
+        final Map<String, Integer> firstLines = new HashMap<String, Integer>();
+        final BufferedReader reader = new BufferedReader(new FileReader(approvedContentFile));
+        try {
+            int lineNumber = 0;
+            String line;
+            while ((line = reader.readLine()) != null) {
+                lineNumber++;
+                line = line.trim();
+                // we ignore empty and comments lines
+                if (line.length() == 0) continue;
+                if (line.startsWith("#")) continue;
+                try {
+                    RuleIndex.validate(line);
+                } catch (IllegalArgumentException e) {
+                    throw new IOException(String.format("Invalid rule at %s:%d - %s", approvedContentFile, lineNumber, e.getMessage()), e);
+                }
+                // only literally repeated rules are detected here; overlapping rules show up in ApproverReport.getMultiplyMatchedEntries()
+                final Integer firstLine = firstLines.get(line);
+                if (firstLine == null) {
+                    firstLines.put(line, lineNumber);
+                } else {
+                    events.fire.duplicate(approvedContentFile, line, lineNumber, firstLine);
+                }
+                final ApprovedEntry entry = new ApprovedEntry();
+                entry.setUri(line);
+                approvedContent.add(entry);
+            }
+            return approvedContent;
+        } finally {
+            reader.close();
+        }
+    }
+
+    public interface Events {
+        /**
+         * Reports a line that repeats an earlier one.
+         * @param listingFile the listing file
+         * @param line the repeated content, trimmed
+         * @param lineNumber 1-based number of the repeating line
+         * @param firstLineNumber 1-based number of the line where the content occurred first
+         */
+        void duplicate(File listingFile, String line, int lineNumber, int firstLineNumber);
+    }
+}
@@ -0,0 +1,226 @@
+package net.kozelka.contentcheck.expect.impl;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Set;
+import net.kozelka.contentcheck.expect.model.ApprovedEntry;
+import net.kozelka.contentcheck.util.UpdatingFileOutputStream;
+
+/**
+ * Approved content listing compiled for matching: its rules, their {@link RuleIndex}, and the duplicates found while loading it.
+ * <p>The compiled form is kept in a binary cache file, keyed by size, modification time and SHA-1 digest of the listing,
+ * so that an unchanged listing is neither parsed nor indexed again.
+ * When size and time agree, the cache is used directly; when only the time differs (like after a fresh checkout), the digest decides.
+ * Modification times too close to the compilation are not trusted, as a change within the timestamp granularity would go unnoticed.</p>
+ */
+class CompiledListing {
+    private static final int MAGIC = 0x43434c53; // "CCLS"
+    private static final int VERSION = 2;
+    private static final String DIGEST_ALGORITHM = "SHA-1";
+    /**
+     * Modifications within this interval before the compilation might not be reflected by timestamps.
+     */
+    private static final long TIMESTAMP_GRANULARITY = 2000;
+
+    private final long listingSize;
+    private final long listingTime;
+    private final byte[] listingDigest;
+    private final long compileTime;
+    final List<String> rules;
+    final List<Duplicate> duplicates;
+    final RuleIndex index;
+    /**
+     * True when the cache file does not hold this compilation, or does not trust its listing time yet.
+     */
+    private boolean outdatedCache;
+
+    private CompiledListing(long listingSize, long listingTime, byte[] listingDigest, long compileTime,
+                            List<String> rules, List<Duplicate> duplicates, RuleIndex index) {
+        this.listingSize = listingSize;
+        this.listingTime = listingTime;
+        this.listingDigest = listingDigest;
+        this.compileTime = compileTime;
+        this.rules = rules;
+        this.duplicates = duplicates;
+        this.index = index;
+    }
+
+    /**
+     * Loads and indexes the listing.
+     * @param listingFile the listing
+     * @return the compiled listing, not cached yet
+     */
+    static CompiledListing compile(File listingFile) throws IOException {
+        final long compileTime = System.currentTimeMillis();
+        final long listingSize = listingFile.length();
+        final long listingTime = listingFile.lastModified();
+        // digest first, so that a listing changing during the compilation is not cached under the new digest
+        final byte[] listingDigest = digest(listingFile);
+        final List<Duplicate> duplicates = new ArrayList<Duplicate>();
+        final ApprovedContentLoader loader = new ApprovedContentLoader();
+        loader.getEvents().addListener(new ApprovedContentLoader.Events() {
+            public void duplicate(File listingFile, String line, int lineNumber, int firstLineNumber) {
+                duplicates.add(new Duplicate(line, lineNumber, firstLineNumber));
+            }
+        });
+        final Set<ApprovedEntry> approvedEntries = loader.load(listingFile);
+        final List<String> rules = new ArrayList<String>(approvedEntries.size());
+        for (ApprovedEntry approvedEntry : approvedEntries) {
+            rules.add(approvedEntry.getUri());
+        }
+        final CompiledListing result = new CompiledListing(listingSize, listingTime, listingDigest, compileTime,
+            rules, duplicates, new RuleIndex(rules));
+        result.outdatedCache = true;
+        return result;
+    }
+
+    /**
+     * @param cacheFile the cache file
+     * @param listingFile the listing that the cache was compiled from
+     * @return the cached compilation, or null if the cache does not exist, cannot be opened, is damaged, or the listing has changed since
+     */
+    static CompiledListing read(File cacheFile, File listingFile) throws IOException {
+        if (!cacheFile.isFile()) {
+            return null;
+        }
+        final FileInputStream file;
+        try {
+            file = new FileInputStream(cacheFile);
+        } catch (IOException e) {
+            // an unreadable cache is as good as none
+            return null;
+        }
+        final DataInputStream in = new DataInputStream(new BufferedInputStream(file));
+        try {
+            if (in.readInt() != MAGIC || in.readInt() != VERSION) {
+                return null;
+            }
+            final long listingSize = in.readLong();
+            final long listingTime = in.readLong();
+            final long compileTime = in.readLong();
+            final byte[] listingDigest = new byte[in.readUnsignedByte()];
+            in.readFully(listingDigest);
+            if (listingSize != listingFile.length()) {
+                return null;
+            }
+            final boolean sameTime = listingTime == listingFile.lastModified() && listingTime < compileTime - TIMESTAMP_GRANULARITY;
+            if (!sameTime && !Arrays.equals(listingDigest, digest(listingFile))) {
+                return null;
+            }
+            final int ruleCount = in.readInt();
+            final List<String> rules = new ArrayList<String>(ruleCount);
+            for (int i = 0; i < ruleCount; i++) {
+                rules.add(in.readUTF());
+            }
+            final int duplicateCount = in.readInt();
+            final List<Duplicate> duplicates = new ArrayList<Duplicate>(duplicateCount);
+            for (int i = 0; i < duplicateCount; i++) {
+                duplicates.add(new Duplicate(in.readUTF(), in.readInt(), in.readInt()));
+            }
+            final RuleIndex index = RuleIndex.read(in);
+            if (index.size() != ruleCount) {
+                return null;
+            }
+            if (sameTime) {
+                return new CompiledListing(listingSize, listingTime, listingDigest, compileTime, rules, duplicates, index);
+            }
+            // same content under new time; the cache is rewritten, so that the next run can trust the time
+            final CompiledListing result = new CompiledListing(listingSize, listingFile.lastModified(), listingDigest, System.currentTimeMillis(),
+                rules, duplicates, index);
+            result.outdatedCache = true;
+            return result;
+        } catch (IOException e) {
+            // truncated or otherwise damaged cache is simply rebuilt
+            return null;
+        } catch (RuntimeException e) {
+            // like a damaged regular expression
+            return null;
+        } finally {
+            in.close();
+        }
+    }
+
+    /**
+     * @return true if the cache file should be {@link #write written}
+     */
+    boolean isOutdatedCache() {
+        return outdatedCache;
+    }
+
+    /**
+     * Writes the cache atomically, so that concurrent builds never see it partially written.
+     * @param cacheFile the cache file
+     */
+    void write(File cacheFile) throws IOException {
+        final UpdatingFileOutputStream file = new UpdatingFileOutputStream(cacheFile);
+        try {
+            final DataOutputStream out = new DataOutputStream(new BufferedOutputStream(file));
+            out.writeInt(MAGIC);
+            out.writeInt(VERSION);
+            out.writeLong(listingSize);
+            out.writeLong(listingTime);
+            out.writeLong(compileTime);
+            out.writeByte(listingDigest.length);
+            out.write(listingDigest);
+            out.writeInt(rules.size());
+            for (String rule : rules) {
+                out.writeUTF(rule);
+            }
+            out.writeInt(duplicates.size());
+            for (Duplicate duplicate : duplicates) {
+                out.writeUTF(duplicate.line);
+                out.writeInt(duplicate.lineNumber);
+                out.writeInt(duplicate.firstLineNumber);
+            }
+            index.write(out);
+            out.close();
+            outdatedCache = false;
+        } finally {
+            file.discard();
+        }
+    }
+
+    private static byte[] digest(File file) throws IOException {
+        final MessageDigest digest;
+        try {
+            digest = MessageDigest.getInstance(DIGEST_ALGORITHM);
+        } catch (NoSuchAlgorithmException e) {
+            // every JRE must support SHA-1
+            throw new IllegalStateException(e);
+        }
+        final InputStream is = new FileInputStream(file);
+        try {
+            final byte[] buffer = new byte[8192];
+            int n;
+            while ((n = is.read(buffer)) > 0) {
+                digest.update(buffer, 0, n);
+            }
+        } finally {
+            is.close();
+        }
+        return digest.digest();
+    }
+
+    static class Duplicate {
+        final String line;
+        final int lineNumber;
+        final int firstLineNumber;
+
+        Duplicate(String line, int lineNumber, int firstLineNumber) {
+            this.line = line;
+            this.lineNumber = lineNumber;
+            this.firstLineNumber = firstLineNumber;
+        }
+    }
+}
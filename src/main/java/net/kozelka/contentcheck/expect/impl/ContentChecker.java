@@ -1,17 +1,26 @@
 package net.kozelka.contentcheck.expect.impl;
 
-import java.io.BufferedReader;
 import java.io.File;
-import java.io.FileReader;
 import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
 import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
 import java.util.Set;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.Future;
+import java.util.concurrent.RecursiveTask;
 import net.kozelka.contentcheck.expect.model.ActualEntry;
 import net.kozelka.contentcheck.expect.model.ApprovedEntry;
 import net.kozelka.contentcheck.expect.api.ApproverReport;
 import net.kozelka.contentcheck.introspection.ContentIntrospector;
 import net.kozelka.contentcheck.util.EventSink;
-import org.codehaus.plexus.util.SelectorUtils;
 
 /**
  * The content checker implementation.
@@ -20,6 +29,8 @@ public class ContentChecker {
 
     private final EventSink<Events> events = EventSink.create(Events.class);
     private ContentIntrospector introspector;
+    private int parallelism = 1;
+    private File cacheDirectory;
 
     static boolean entrysetContainsUri(Set<ApprovedEntry> entryset, String uri) {
         for (ApprovedEntry approvedEntry : entryset) {
@@ -36,6 +47,24 @@ public class ContentChecker {
         this.introspector = introspector;
     }
 
+    /**
+     * @param parallelism number of threads matching actual entries against approved content; the report does not depend on it
+     */
+    public void setParallelism(int parallelism) {
+        if (parallelism < 1) {
+            throw new IllegalArgumentException("parallelism must be positive: " + parallelism);
+        }
+        this.parallelism = parallelism;
+    }
+
+    /**
+     * @param cacheDirectory where to keep approved content compiled for matching, so that unchanged listing is not parsed again;
+     *                       null (the default) to compile it on every check
+     */
+    public void setCacheDirectory(File cacheDirectory) {
+        this.cacheDirectory = cacheDirectory;
+    }
+
     /**
      * Checks a content of {@code sourceFile} according to an allowed content defined by {@code approvedContentFile}.
      *
@@ -44,89 +73,281 @@ public class ContentChecker {
      * @throws IOException if something very bad happen
      */
     public ApproverReport check(final File approvedContentFile) throws IOException{
-        final Set<ApprovedEntry> approvedEntries = readApprovedContent(approvedContentFile);
+        final RuleSet ruleSet = readRuleSet(approvedContentFile);
+        return check(ruleSet, introspector, parallelism);
+    }
+
+    /**
+     * Checks several sources according to the same allowed content, which is read and compiled only once.
+     * Sources are checked concurrently, by up to {@link #setParallelism parallelism} threads.
+     *
+     * @param approvedContentFile a file that defines allowed content
+     * @param introspectors one for each source
+     * @return the results of source checks, by source file, in the order of introspectors
+     * @throws IOException if something very bad happen
+     */
+    public Map<File, ApproverReport> checkAll(final File approvedContentFile, List<ContentIntrospector> introspectors) throws IOException {
+        final RuleSet ruleSet = readRuleSet(approvedContentFile);
+        final Map<File, ApproverReport> result = new LinkedHashMap<File, ApproverReport>();
+        final int threads = Math.min(parallelism, introspectors.size());
+        if (threads <= 1) {
+            for (ContentIntrospector sourceIntrospector : introspectors) {
+                result.put(sourceIntrospector.getSourceFile(), check(ruleSet, sourceIntrospector, parallelism));
+            }
+            return result;
+        }
+        // sources are the unit of parallelism here; each one is matched by its own thread
+        final ExecutorService executor = Executors.newFixedThreadPool(threads);
+        try {
+            final List<Future<ApproverReport>> reports = new ArrayList<Future<ApproverReport>>(introspectors.size());
+            for (final ContentIntrospector sourceIntrospector : introspectors) {
+                reports.add(executor.submit(new Callable<ApproverReport>() {
+                    @Override
+                    public ApproverReport call() throws IOException {
+                        return check(ruleSet, sourceIntrospector, 1);
+                    }
+                }));
+            }
+            for (int i = 0; i < introspectors.size(); i++) {
+                final File sourceFile = introspectors.get(i).getSourceFile();
+                result.put(sourceFile, getReport(sourceFile, reports.get(i)));
+            }
+        } finally {
+            executor.shutdownNow();
+        }
+        return result;
+    }
+
+    private RuleSet readRuleSet(File approvedContentFile) throws IOException {
+        final CompiledListing listing = compileListing(approvedContentFile);
+        // duplicates are reported on every check, even when the listing comes from the cache
+        for (CompiledListing.Duplicate duplicate : listing.duplicates) {
+            events.fire.duplicate(approvedContentFile, duplicate.line, duplicate.lineNumber, duplicate.firstLineNumber);
+        }
+        final Set<ApprovedEntry> approvedEntries = new LinkedHashSet<ApprovedEntry>();
+        for (String rule : listing.rules) {
+            final ApprovedEntry entry = new ApprovedEntry();
+            entry.setUri(rule);
+            approvedEntries.add(entry);
+        }
         events.fire.contentListingSummary(approvedContentFile, approvedEntries.size());
+        return new RuleSet(approvedEntries, listing.index);
+    }
+
+    private CompiledListing compileListing(File approvedContentFile) throws IOException {
+        if (cacheDirectory == null) {
+            return CompiledListing.compile(approvedContentFile);
+        }
+        final File cacheFile = new File(cacheDirectory, String.format("%s-%08x.rules",
+            approvedContentFile.getName(), approvedContentFile.getAbsolutePath().hashCode()));
+        CompiledListing listing = CompiledListing.read(cacheFile, approvedContentFile);
+        if (listing == null) {
+            listing = CompiledListing.compile(approvedContentFile);
+        }
+        if (listing.isOutdatedCache()) {
+            try {
+                listing.write(cacheFile);
+            } catch (IOException e) {
+                events.fire.cannotWriteCache(cacheFile, e);
+            }
+        }
+        return listing;
+    }
+
+    private ApproverReport check(RuleSet ruleSet, ContentIntrospector sourceIntrospector, int matchingParallelism) throws IOException {
+        // coordinates cost reading each archive, so they are only read when some rule needs them; the caller's setting is restored
+        final boolean readCoordinates = sourceIntrospector.isReadCoordinates();
+        sourceIntrospector.setReadCoordinates(readCoordinates || ruleSet.needsCoordinates);
         final Set<ActualEntry> actualEntries = new LinkedHashSet<ActualEntry>();
         final ContentIntrospector.Events collector = new ContentCollector(actualEntries);
-        introspector.getEvents().addListener(collector);
-        final int totalCount = introspector.walk();
-        introspector.getEvents().removeListener(collector);
+        sourceIntrospector.getEvents().addListener(collector);
+        final int totalCount;
+        try {
+            totalCount = sourceIntrospector.walk();
+        } finally {
+            sourceIntrospector.getEvents().removeListener(collector);
+            sourceIntrospector.setReadCoordinates(readCoordinates);
+        }
         //XXX dagi: duplicit entries detection https://github.com/pkozelka/contentcheck-maven-plugin/issues#issue/4
-        events.fire.summary(introspector.getSourceFile(), actualEntries.size(), totalCount);
-        return compareEntries(approvedEntries, actualEntries);
+        events.fire.summary(sourceIntrospector.getSourceFile(), actualEntries.size(), totalCount);
+        return compareEntries(ruleSet, actualEntries, matchingParallelism);
     }
 
-    static boolean match(String approvedPattern, String actual) {
-        return SelectorUtils.matchPath(approvedPattern, actual);
+    private static ApproverReport getReport(File sourceFile, Future<ApproverReport> report) throws IOException {
+        try {
+            return report.get();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new InterruptedIOException("Interrupted while checking " + sourceFile);
+        } catch (ExecutionException e) {
+            final Throwable cause = e.getCause();
+            if (cause instanceof IOException) throw (IOException) cause;
+            if (cause instanceof RuntimeException) throw (RuntimeException) cause;
+            if (cause instanceof Error) throw (Error) cause;
+            final IOException ioe = new IOException("Cannot check " + sourceFile);
+            ioe.initCause(cause);
+            throw ioe;
+        }
     }
 
     static ApproverReport compareEntries(Set<ApprovedEntry> approvedEntries, Set<ActualEntry> actualEntries) {
-        final Set<ActualEntry> unexpectedEntries = new LinkedHashSet<ActualEntry>(actualEntries.size());
-        for (ActualEntry actual : actualEntries) {
-            boolean found = false;
-            for (ApprovedEntry approved : approvedEntries) {
-                if (match(approved.getUri(), actual.getUri())) {
-                    found = true;
-                    break;
-                }
-            }
-            if (!found) {
-                unexpectedEntries.add(actual);
+        return compareEntries(approvedEntries, actualEntries, 1);
+    }
+
+    static ApproverReport compareEntries(Set<ApprovedEntry> approvedEntries, Set<ActualEntry> actualEntries, int parallelism) {
+        return compareEntries(new RuleSet(approvedEntries), actualEntries, parallelism);
+    }
+
+    private static ApproverReport compareEntries(RuleSet ruleSet, Set<ActualEntry> actualEntries, int parallelism) {
+        final List<ApprovedEntry> rules = ruleSet.rules;
+        final RuleIndex ruleIndex = ruleSet.index;
+        // single pass: unexpected entries are flagged directly, missing ones are the rules without hits
+        final ActualEntry[] actuals = actualEntries.toArray(new ActualEntry[actualEntries.size()]);
+        final boolean[] unexpected = new boolean[actuals.length];
+        final MatchingTask task = new MatchingTask(ruleIndex, actuals, unexpected, 0, actuals.length);
+        final RuleHits hits;
+        if (parallelism > 1 && actuals.length > MatchingTask.THRESHOLD) {
+            final ForkJoinPool pool = new ForkJoinPool(parallelism);
+            try {
+                hits = pool.invoke(task);
+            } finally {
+                pool.shutdown();
             }
+        } else {
+            hits = task.compute();
         }
-        final ApproverReport result = new ApproverReport(approvedEntries, actualEntries);
-        result.setUnexpectedEntries(unexpectedEntries);
-
-        // TODO: merge these two iterations into one; remove from a working set while doing first iteration, etc. Beware of regexes on one side.
 
-        final Set<ApprovedEntry> missingEntries = new LinkedHashSet<ApprovedEntry>(approvedEntries.size());
-        for (ApprovedEntry approved : approvedEntries) {
-            boolean found = false;
-            for (ActualEntry actual : actualEntries) {
-                if (match(approved.getUri(), actual.getUri())) {
-                    found = true;
-                    break;
-                }
+        final Set<ActualEntry> unexpectedEntries = new LinkedHashSet<ActualEntry>();
+        for (int i = 0; i < actuals.length; i++) {
+            if (unexpected[i]) {
+                unexpectedEntries.add(actuals[i]);
             }
-            if (!found) {
-                missingEntries.add(approved);
+        }
+        final Set<ApprovedEntry> missingEntries = new LinkedHashSet<ApprovedEntry>();
+        final Set<ApprovedEntry> deadRules = new LinkedHashSet<ApprovedEntry>();
+        final Map<ApprovedEntry, Integer> ruleHits = new LinkedHashMap<ApprovedEntry, Integer>();
+        for (int i = 0; i < rules.size(); i++) {
+            final ApprovedEntry rule = rules.get(i);
+            ruleHits.put(rule, hits.hits[i]);
+            if (hits.hits[i] == 0) {
+                missingEntries.add(rule);
+            } else if (hits.exclusiveHits[i] == 0) {
+                deadRules.add(rule);
+            }
+        }
+        final Map<ActualEntry, List<ApprovedEntry>> multiplyMatched = new LinkedHashMap<ActualEntry, List<ApprovedEntry>>();
+        for (RuleHits.Ambiguity ambiguity : hits.ambiguities) {
+            final List<ApprovedEntry> matchingRules = new ArrayList<ApprovedEntry>(ambiguity.rules.length);
+            for (int rule : ambiguity.rules) {
+                matchingRules.add(rules.get(rule));
             }
+            multiplyMatched.put(actuals[ambiguity.pathIndex], matchingRules);
         }
+        final ApproverReport result = new ApproverReport(ruleSet.approvedEntries, actualEntries);
+        result.setUnexpectedEntries(unexpectedEntries);
         result.setMissingEntries(missingEntries);
+        result.setRuleHits(ruleHits);
+        result.setMultiplyMatchedEntries(multiplyMatched);
+        result.setDeadRules(deadRules);
         return result;
     }
 
     protected Set<ApprovedEntry> readApprovedContent(final File approvedContentFile) throws IOException {
-        //TODO this should become a separate "parser/loader" class, to enable support of multiple formats and new features
-        final Set<ApprovedEntry> approvedContent = new LinkedHashSet<ApprovedEntry>();
-        final BufferedReader reader = new BufferedReader(new FileReader(approvedContentFile));
-        try {
-            String line;
-            while ((line = reader.readLine())!= null) {
-                line = line.trim();
-                // we ignore empty and comments lines
-                if (line.length() == 0) continue;
-                if (line.startsWith("#")) continue;
-                // TODO: this is a bit incorrect, because line is now rather "rule" that can have multiple, hard-to-compare forms. We should replace this with checking that each occurrence is matched by exactly one rule.
-                if(entrysetContainsUri(approvedContent, line)) {
-                    events.fire.duplicate(approvedContentFile, line);
-                }
-                final ApprovedEntry entry = new ApprovedEntry();
-                entry.setUri(line);
-                approvedContent.add(entry);
+        final ApprovedContentLoader loader = new ApprovedContentLoader();
+        loader.getEvents().addListener(events.fire);
+        return loader.load(approvedContentFile);
+    }
+
+    /**
+     * Matches a range of actual entries, splitting it between forked subtasks when too long.
+     * Each subtask flags unexpected entries in its own part of the shared array,
+     * and returns the hits of its entries; these are merged in the order of entries.
+     */
+    private static class MatchingTask extends RecursiveTask<RuleHits> {
+        static final int THRESHOLD = 4096;
+        private final RuleIndex ruleIndex;
+        private final ActualEntry[] actuals;
+        private final boolean[] unexpected;
+        private final int from;
+        private final int to;
+
+        MatchingTask(RuleIndex ruleIndex, ActualEntry[] actuals, boolean[] unexpected, int from, int to) {
+            this.ruleIndex = ruleIndex;
+            this.actuals = actuals;
+            this.unexpected = unexpected;
+            this.from = from;
+            this.to = to;
+        }
+
+        @Override
+        protected RuleHits compute() {
+            if (to - from > THRESHOLD && inForkJoinPool()) {
+                final int middle = (from + to) >>> 1;
+                final MatchingTask left = new MatchingTask(ruleIndex, actuals, unexpected, from, middle);
+                final MatchingTask right = new MatchingTask(ruleIndex, actuals, unexpected, middle, to);
+                right.fork();
+                final RuleHits hits = left.compute();
+                hits.merge(right.join());
+                return hits;
             }
-            return approvedContent;
-        } finally {
-            reader.close();
+            final RuleHits hits = new RuleHits(ruleIndex.size());
+            for (int i = from; i < to; i++) {
+                hits.begin();
+                ruleIndex.match(actuals[i].getUri(), actuals[i].getCoordinates(), hits);
+                unexpected[i] = hits.end(i) == 0;
+            }
+            return hits;
         }
     }
 
-    public interface Events {
-        void summary(File sourceFile, int checkedCount, int totalCount);
+    /**
+     * Approved content compiled for matching; immutable, so that it can be shared by concurrent checks.
+     */
+    private static class RuleSet {
+        final Set<ApprovedEntry> approvedEntries;
+        final List<ApprovedEntry> rules;
+        final RuleIndex index;
+        final boolean needsCoordinates;
 
-        void duplicate(File listingFile, String line);
+        RuleSet(Set<ApprovedEntry> approvedEntries) {
+            this(approvedEntries, new RuleIndex(getUris(approvedEntries)));
+        }
+
+        /**
+         * @param index index of the approved entries, in their order
+         */
+        RuleSet(Set<ApprovedEntry> approvedEntries, RuleIndex index) {
+            this.approvedEntries = approvedEntries;
+            this.rules = new ArrayList<ApprovedEntry>(approvedEntries);
+            boolean gav = false;
+            for (ApprovedEntry approved : rules) {
+                gav |= approved.getUri().startsWith(RuleIndex.GAV_RULE_PREFIX);
+            }
+            this.index = index;
+            this.needsCoordinates = gav;
+        }
+
+        private static List<String> getUris(Set<ApprovedEntry> approvedEntries) {
+            final List<String> uris = new ArrayList<String>(approvedEntries.size());
+            for (ApprovedEntry approved : approvedEntries) {
+                uris.add(approved.getUri());
+            }
+            return uris;
+        }
+    }
+
+    public interface Events extends ApprovedContentLoader.Events {
+        void summary(File sourceFile, int checkedCount, int totalCount);
 
         void contentListingSummary(File listingFile, int pathCount);
+
+        /**
+         * Reports that the compiled approved content could not be {@link ContentChecker#setCacheDirectory cached};
+         * the check itself is not affected, only the next one compiles the listing again.
+         * @param cacheFile the cache file
+         * @param e the cause
+         */
+        void cannotWriteCache(File cacheFile, IOException e);
     }
 
 }
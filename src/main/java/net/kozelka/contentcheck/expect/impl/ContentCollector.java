@@ -2,15 +2,19 @@ package net.kozelka.contentcheck.expect.impl;
 
 import java.io.File;
 import java.io.IOException;
+import java.util.ArrayList;
 import java.util.Collection;
+import java.util.List;
 import net.kozelka.contentcheck.expect.model.ActualEntry;
 import net.kozelka.contentcheck.introspection.ContentIntrospector;
+import net.kozelka.contentcheck.introspection.MavenCoordinates;
 
 /**
  * This listener collects actual entries from an archive.
  */
 public class ContentCollector implements ContentIntrospector.Events {
     private final Collection<ActualEntry> actualEntries;
+    private final List<MavenCoordinates> pendingCoordinates = new ArrayList<MavenCoordinates>();
 
     public ContentCollector(Collection<ActualEntry> actualEntries) {
         this.actualEntries = actualEntries;
@@ -28,15 +32,20 @@ public class ContentCollector implements ContentIntrospector.Events {
     public void cannotCheckManifest(String jarPath, Exception e) {
     }
 
-    public void cannotClose(String jarPath, IOException e) {
+    public void cannotWriteIndex(File indexFile, IOException e) {
     }
 
-    public void checkingInTmpfile(String jarPath, File tempFile) {
+    public void foundCoordinates(String entryName, MavenCoordinates coordinates) {
+        pendingCoordinates.add(coordinates);
     }
 
     public void processEntry(String entryName) {
         final ActualEntry actualEntry = new ActualEntry();
         actualEntry.setUri(entryName);
+        if (!pendingCoordinates.isEmpty()) {
+            actualEntry.setCoordinates(new ArrayList<MavenCoordinates>(pendingCoordinates));
+            pendingCoordinates.clear();
+        }
         actualEntries.add(actualEntry);
     }
 }
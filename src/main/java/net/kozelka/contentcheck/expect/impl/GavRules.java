@@ -0,0 +1,169 @@
+package net.kozelka.contentcheck.expect.impl;
+
+import java.io.DataInput;
+import java.io.DataOutput;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import net.kozelka.contentcheck.introspection.MavenCoordinates;
+import net.kozelka.contentcheck.util.PathPattern;
+
+/**
+ * Matches entries by their {@link MavenCoordinates}, regardless of their path.
+ * Rules have form <code>gav:groupId:artifactId[:version]</code>, where each part can use wildcards <code>*</code> and <code>?</code>.
+ * Rules with literal groupId and artifactId are kept in a hash index by these two; only the rest is tried for every entry.
+ */
+class GavRules {
+    private final Map<String, List<GavRule>> literalGaRules = new HashMap<String, List<GavRule>>();
+    private final List<GavRule> otherRules = new ArrayList<GavRule>();
+
+    /**
+     * @param rule the rule position
+     * @param spec the rule, without prefix
+     * @throws IllegalArgumentException if the rule does not have two or three non-empty parts
+     */
+    void add(int rule, String spec) {
+        final String[] parts = split(spec);
+        final GavRule gavRule = new GavRule(rule,
+            PathPattern.compile(parts[0]),
+            PathPattern.compile(parts[1]),
+            parts.length == 3 ? PathPattern.compile(parts[2]) : null);
+        if (gavRule.groupId.isLiteral() && gavRule.artifactId.isLiteral()) {
+            final String ga = gaKey(parts[0], parts[1]);
+            List<GavRule> rules = literalGaRules.get(ga);
+            if (rules == null) {
+                rules = new ArrayList<GavRule>();
+                literalGaRules.put(ga, rules);
+            }
+            rules.add(gavRule);
+        } else {
+            otherRules.add(gavRule);
+        }
+    }
+
+    /**
+     * @param spec the rule, without prefix
+     * @return groupId, artifactId and optionally version part of the rule
+     * @throws IllegalArgumentException if the rule does not have two or three non-empty parts
+     */
+    static String[] split(String spec) {
+        final String[] parts = spec.split(":", -1);
+        boolean valid = parts.length == 2 || parts.length == 3;
+        for (int i = 0; valid && i < parts.length; i++) {
+            valid = !parts[i].isEmpty();
+        }
+        if (!valid) {
+            throw new IllegalArgumentException("Invalid rule, expected groupId:artifactId[:version] - " + spec);
+        }
+        return parts;
+    }
+
+    /**
+     * Writes the rules, for {@link #read}.
+     */
+    void write(DataOutput out) throws IOException {
+        out.writeInt(literalGaRules.size());
+        for (Map.Entry<String, List<GavRule>> entry : literalGaRules.entrySet()) {
+            out.writeUTF(entry.getKey());
+            write(out, entry.getValue());
+        }
+        write(out, otherRules);
+    }
+
+    /**
+     * Reads rules {@link #write written} before, without parsing them again.
+     */
+    void read(DataInput in) throws IOException {
+        final int literalCount = in.readInt();
+        for (int i = 0; i < literalCount; i++) {
+            final String ga = in.readUTF();
+            final List<GavRule> rules = new ArrayList<GavRule>();
+            read(in, rules);
+            literalGaRules.put(ga, rules);
+        }
+        read(in, otherRules);
+    }
+
+    private static void write(DataOutput out, List<GavRule> rules) throws IOException {
+        out.writeInt(rules.size());
+        for (GavRule gavRule : rules) {
+            out.writeInt(gavRule.rule);
+            gavRule.groupId.write(out);
+            gavRule.artifactId.write(out);
+            out.writeBoolean(gavRule.version != null);
+            if (gavRule.version != null) {
+                gavRule.version.write(out);
+            }
+        }
+    }
+
+    private static void read(DataInput in, List<GavRule> rules) throws IOException {
+        final int count = in.readInt();
+        for (int i = 0; i < count; i++) {
+            final int rule = in.readInt();
+            final PathPattern groupId = PathPattern.read(in);
+            final PathPattern artifactId = PathPattern.read(in);
+            rules.add(new GavRule(rule, groupId, artifactId, in.readBoolean() ? PathPattern.read(in) : null));
+        }
+    }
+
+    /**
+     * Finds all rules matching any of given coordinates; each rule is added at most once.
+     * @param coordinates coordinates of one entry
+     * @param hits receives the matching rules
+     */
+    void match(List<MavenCoordinates> coordinates, RuleHits hits) {
+        if (coordinates.isEmpty()) return;
+        final List<Integer> matched = coordinates.size() > 1 ? new ArrayList<Integer>() : null;
+        for (MavenCoordinates c : coordinates) {
+            final List<GavRule> candidates = literalGaRules.get(gaKey(c.getGroupId(), c.getArtifactId()));
+            if (candidates != null) {
+                for (GavRule gavRule : candidates) {
+                    if (gavRule.matchesVersion(c)) {
+                        add(gavRule.rule, hits, matched);
+                    }
+                }
+            }
+            for (GavRule gavRule : otherRules) {
+                if (gavRule.groupId.matches(c.getGroupId()) && gavRule.artifactId.matches(c.getArtifactId()) && gavRule.matchesVersion(c)) {
+                    add(gavRule.rule, hits, matched);
+                }
+            }
+        }
+    }
+
+    private static void add(int rule, RuleHits hits, List<Integer> matched) {
+        if (matched != null) {
+            if (matched.contains(rule)) return;
+            matched.add(rule);
+        }
+        hits.add(rule);
+    }
+
+    private static String gaKey(String groupId, String artifactId) {
+        return groupId + ':' + artifactId;
+    }
+
+    private static class GavRule {
+        final int rule;
+        final PathPattern groupId;
+        final PathPattern artifactId;
+        /**
+         * Null when any version matches.
+         */
+        final PathPattern version;
+
+        GavRule(int rule, PathPattern groupId, PathPattern artifactId, PathPattern version) {
+            this.rule = rule;
+            this.groupId = groupId;
+            this.artifactId = artifactId;
+            this.version = version;
+        }
+
+        boolean matchesVersion(MavenCoordinates coordinates) {
+            return version == null || (coordinates.getVersion() != null && version.matches(coordinates.getVersion()));
+        }
+    }
+}
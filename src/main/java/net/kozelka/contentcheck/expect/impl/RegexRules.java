@@ -0,0 +1,297 @@
+package net.kozelka.contentcheck.expect.impl;
+
+import java.io.DataInput;
+import java.io.DataOutput;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+/**
+ * Matches paths against many regular expression rules at once.
+ * <p>Rules are bucketed by their literal prefix, the leading characters that any matching path must start with;
+ * a character trie of these prefixes selects the buckets relevant to a path in a single scan of the path.</p>
+ * <p>Rules of one bucket are combined into one alternation, which rejects non-matching paths with single regex evaluation.
+ * When the alternation matches, a capturing group around each rule tells the first matching rule;
+ * only the rules following it are then tried individually, to find out all matching ones.</p>
+ */
+class RegexRules {
+    private static final String METACHARACTERS = "\\^$.|?*+()[]{}";
+    private static final String QUANTIFIERS = "?*{";
+
+    private final PrefixNode root = new PrefixNode();
+
+    /**
+     * @param rule the rule position
+     * @param regex the regular expression, which must match the whole path
+     */
+    void add(int rule, String regex) {
+        final Pattern pattern = Pattern.compile(regex);
+        PrefixNode node = root;
+        final String prefix = literalPrefix(regex);
+        for (int i = 0; i < prefix.length(); i++) {
+            node = node.getOrCreateChild(prefix.charAt(i));
+        }
+        if (node.bucket == null) {
+            node.bucket = new Bucket();
+        }
+        node.bucket.add(rule, pattern);
+    }
+
+    /**
+     * Must be called after all rules are {@link #add added}, and before any {@link #match matching}.
+     */
+    void compile() {
+        root.compile();
+    }
+
+    /**
+     * Writes the {@link #compile compiled} rules, for {@link #read}.
+     */
+    void write(DataOutput out) throws IOException {
+        root.write(out);
+    }
+
+    /**
+     * Reads rules {@link #write written} before, already compiled; only the regular expressions are compiled again.
+     */
+    void read(DataInput in) throws IOException {
+        root.read(in);
+    }
+
+    /**
+     * Finds all rules matching given path; can be called concurrently.
+     * @param path the path
+     * @param hits receives the matching rules
+     */
+    void match(String path, RuleHits hits) {
+        PrefixNode node = root;
+        int pos = 0;
+        while (node != null) {
+            if (node.bucket != null) {
+                node.bucket.match(path, hits);
+            }
+            if (pos == path.length()) break;
+            node = node.getChild(path.charAt(pos++));
+        }
+    }
+
+    /**
+     * Finds the characters that every matching path must start with.
+     * The analysis is conservative: it stops at the first construct it does not understand.
+     */
+    static String literalPrefix(String regex) {
+        if (hasTopLevelAlternation(regex)) {
+            return "";
+        }
+        final StringBuilder sb = new StringBuilder();
+        int i = 0;
+        while (i < regex.length()) {
+            char c = regex.charAt(i);
+            int next = i + 1;
+            if (c == '\\') {
+                // escaped punctuation is literal; letters and digits introduce classes, references and quoting
+                if (next == regex.length() || Character.isLetterOrDigit(regex.charAt(next))) break;
+                c = regex.charAt(next);
+                next++;
+            } else if (METACHARACTERS.indexOf(c) >= 0) {
+                break;
+            }
+            if (next < regex.length() && QUANTIFIERS.indexOf(regex.charAt(next)) >= 0) {
+                // the character is optional
+                break;
+            }
+            sb.append(c);
+            i = next;
+        }
+        return sb.toString();
+    }
+
+    private static boolean hasTopLevelAlternation(String regex) {
+        int depth = 0;
+        boolean inClass = false;
+        for (int i = 0; i < regex.length(); i++) {
+            final char c = regex.charAt(i);
+            if (c == '\\') {
+                i++;
+            } else if (inClass) {
+                if (c == ']') {
+                    inClass = false;
+                }
+            } else if (c == '[') {
+                inClass = true;
+            } else if (c == '(') {
+                depth++;
+            } else if (c == ')') {
+                depth--;
+            } else if (c == '|' && depth == 0) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    private static class PrefixNode {
+        private char[] keys = new char[0];
+        private PrefixNode[] children = new PrefixNode[0];
+        Bucket bucket;
+
+        PrefixNode getChild(char c) {
+            for (int i = 0; i < keys.length; i++) {
+                if (keys[i] == c) return children[i];
+            }
+            return null;
+        }
+
+        PrefixNode getOrCreateChild(char c) {
+            PrefixNode child = getChild(c);
+            if (child == null) {
+                child = new PrefixNode();
+                final int n = keys.length;
+                final char[] newKeys = new char[n + 1];
+                System.arraycopy(keys, 0, newKeys, 0, n);
+                newKeys[n] = c;
+                final PrefixNode[] newChildren = new PrefixNode[n + 1];
+                System.arraycopy(children, 0, newChildren, 0, n);
+                newChildren[n] = child;
+                keys = newKeys;
+                children = newChildren;
+            }
+            return child;
+        }
+
+        void compile() {
+            if (bucket != null) {
+                bucket.compile();
+            }
+            for (PrefixNode child : children) {
+                child.compile();
+            }
+        }
+
+        void write(DataOutput out) throws IOException {
+            out.writeBoolean(bucket != null);
+            if (bucket != null) {
+                bucket.write(out);
+            }
+            out.writeInt(keys.length);
+            for (int i = 0; i < keys.length; i++) {
+                out.writeChar(keys[i]);
+                children[i].write(out);
+            }
+        }
+
+        void read(DataInput in) throws IOException {
+            if (in.readBoolean()) {
+                bucket = new Bucket();
+                bucket.read(in);
+            }
+            final int childCount = in.readInt();
+            for (int i = 0; i < childCount; i++) {
+                getOrCreateChild(in.readChar()).read(in);
+            }
+        }
+    }
+
+    private static class Bucket {
+        private final List<Integer> rules = new ArrayList<Integer>();
+        private final List<Pattern> patterns = new ArrayList<Pattern>();
+        /**
+         * Alternation of all patterns; null when there is only one, or when some pattern cannot be combined.
+         */
+        private Pattern combined;
+        /**
+         * Number of the group enclosing each pattern in {@link #combined}.
+         */
+        private int[] groups;
+
+        void add(int rule, Pattern pattern) {
+            rules.add(rule);
+            patterns.add(pattern);
+        }
+
+        void compile() {
+            if (patterns.size() < 2) return;
+            final StringBuilder sb = new StringBuilder();
+            final int[] patternGroups = new int[patterns.size()];
+            int group = 1;
+            for (int i = 0; i < patterns.size(); i++) {
+                final Pattern pattern = patterns.get(i);
+                if (!isCombinable(pattern.pattern())) return;
+                if (i > 0) {
+                    sb.append('|');
+                }
+                sb.append('(').append(pattern.pattern()).append(')');
+                patternGroups[i] = group;
+                // groups of the pattern itself follow its enclosing group
+                group += 1 + pattern.matcher("").groupCount();
+            }
+            combined = Pattern.compile(sb.toString());
+            groups = patternGroups;
+        }
+
+        void write(DataOutput out) throws IOException {
+            out.writeInt(rules.size());
+            for (int i = 0; i < rules.size(); i++) {
+                out.writeInt(rules.get(i));
+                out.writeUTF(patterns.get(i).pattern());
+            }
+            out.writeBoolean(combined != null);
+            if (combined != null) {
+                out.writeUTF(combined.pattern());
+                RuleIndex.writeInts(out, groups);
+            }
+        }
+
+        void read(DataInput in) throws IOException {
+            final int ruleCount = in.readInt();
+            for (int i = 0; i < ruleCount; i++) {
+                add(in.readInt(), Pattern.compile(in.readUTF()));
+            }
+            if (in.readBoolean()) {
+                combined = Pattern.compile(in.readUTF());
+                groups = RuleIndex.readInts(in);
+            }
+        }
+
+        /**
+         * Numbered back references would point to wrong groups in the alternation,
+         * and a group name used by two patterns would make the alternation invalid.
+         */
+        private static boolean isCombinable(String regex) {
+            for (int i = 0; i < regex.length() - 1; i++) {
+                final char c = regex.charAt(i);
+                final char next = regex.charAt(i + 1);
+                if (c == '\\') {
+                    if (next >= '1' && next <= '9') return false;
+                    if (next == 'k') return false;
+                    i++;
+                } else if (c == '(' && regex.startsWith("?<", i + 1)) {
+                    // lookbehinds are fine, named groups are not
+                    if (!regex.startsWith("?<=", i + 1) && !regex.startsWith("?<!", i + 1)) return false;
+                }
+            }
+            return true;
+        }
+
+        void match(String path, RuleHits hits) {
+            int next = 0;
+            if (combined != null) {
+                final Matcher matcher = combined.matcher(path);
+                if (!matcher.matches()) return;
+                // alternatives are tried in order, so no pattern before the matched one matches
+                while (matcher.start(groups[next]) < 0) {
+                    next++;
+                }
+                hits.add(rules.get(next));
+                next++;
+            }
+            for (int i = next; i < patterns.size(); i++) {
+                if (patterns.get(i).matcher(path).matches()) {
+                    hits.add(rules.get(i));
+                }
+            }
+        }
+    }
+}
@@ -0,0 +1,85 @@
+package net.kozelka.contentcheck.expect.impl;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * Accounts rule matches, as found by {@link RuleIndex#match(String, List, RuleHits)}.
+ * Each instance is used by one thread only; instances for separate parts of the source are then {@link #merge merged}.
+ */
+class RuleHits {
+    /**
+     * Number of matched paths, per rule.
+     */
+    final int[] hits;
+    /**
+     * Number of matched paths that no other rule matches, per rule.
+     */
+    final int[] exclusiveHits;
+    /**
+     * Paths matched by more than one rule, in the order of matching.
+     */
+    final List<Ambiguity> ambiguities = new ArrayList<Ambiguity>();
+
+    private int[] current = new int[4];
+    private int currentCount;
+
+    RuleHits(int ruleCount) {
+        hits = new int[ruleCount];
+        exclusiveHits = new int[ruleCount];
+    }
+
+    void begin() {
+        currentCount = 0;
+    }
+
+    void add(int rule) {
+        hits[rule]++;
+        if (currentCount == current.length) {
+            final int[] larger = new int[current.length * 2];
+            System.arraycopy(current, 0, larger, 0, currentCount);
+            current = larger;
+        }
+        current[currentCount++] = rule;
+    }
+
+    /**
+     * @param pathIndex position of the just matched path in the source
+     * @return number of rules matching the path
+     */
+    int end(int pathIndex) {
+        if (currentCount == 1) {
+            exclusiveHits[current[0]]++;
+        } else if (currentCount > 1) {
+            final int[] rules = new int[currentCount];
+            System.arraycopy(current, 0, rules, 0, currentCount);
+            // listing order
+            Arrays.sort(rules);
+            ambiguities.add(new Ambiguity(pathIndex, rules));
+        }
+        return currentCount;
+    }
+
+    /**
+     * Adds counts from another instance, which accounts paths following those accounted here.
+     * @param other hits of the following paths
+     */
+    void merge(RuleHits other) {
+        for (int i = 0; i < hits.length; i++) {
+            hits[i] += other.hits[i];
+            exclusiveHits[i] += other.exclusiveHits[i];
+        }
+        ambiguities.addAll(other.ambiguities);
+    }
+
+    static class Ambiguity {
+        final int pathIndex;
+        final int[] rules;
+
+        Ambiguity(int pathIndex, int[] rules) {
+            this.pathIndex = pathIndex;
+            this.rules = rules;
+        }
+    }
+}
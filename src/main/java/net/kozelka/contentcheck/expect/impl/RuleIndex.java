@@ -0,0 +1,290 @@
+package net.kozelka.contentcheck.expect.impl;
+
+import java.io.DataInput;
+import java.io.DataOutput;
+import java.io.IOException;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.regex.Pattern;
+import net.kozelka.contentcheck.introspection.MavenCoordinates;
+import net.kozelka.contentcheck.util.PathPattern;
+
+/**
+ * Index of approved content rules, for finding the rules matching given path without trying all of them.
+ * <ul>
+ * <li>literal rules are looked up by their normalized path in a hash map</li>
+ * <li>glob rules are stored in a prefix trie, under their leading literal segments;
+ * only rules on the path of the matched entry through the trie are tried</li>
+ * <li>coordinate rules, written as <code>gav:...</code>, are matched by {@link GavRules}</li>
+ * <li>regex rules, written as <code>regex:...</code> or <code>%regex[...]</code>, are matched by {@link RegexRules}</li>
+ * </ul>
+ * Rules are identified by their position in the list passed to {@link #RuleIndex(java.util.List)}.
+ * Matching semantics are exactly those of {@link PathPattern#matches(String)}.
+ * <p>The index can be {@link #write written} in a compiled form, and {@link #read} back without parsing and indexing the rules again.</p>
+ */
+class RuleIndex {
+    /**
+     * Prefix of rules holding regular expression, which must match the whole path.
+     */
+    static final String REGEX_RULE_PREFIX = "regex:";
+    /**
+     * Prefix of rules matching {@link MavenCoordinates} of the entry, like <code>gav:com.google.guava:guava:*</code>.
+     */
+    static final String GAV_RULE_PREFIX = "gav:";
+    private static final int[] NO_RULES = new int[0];
+    private static final char SEPARATOR = '/';
+
+    private final PathPattern[] patterns;
+    private final Map<String, int[]> literalRules = new HashMap<String, int[]>();
+    private final TrieNode rootedGlobs = new TrieNode();
+    private final TrieNode relativeGlobs = new TrieNode();
+    private final RegexRules regexRules = new RegexRules();
+    private final GavRules gavRules = new GavRules();
+
+    /**
+     * Checks the parts of the rule that cannot be checked when matching, like the syntax of regular expressions and coordinates.
+     * @param rule the rule, as written in approved content
+     * @throws IllegalArgumentException if the rule cannot be indexed
+     */
+    static void validate(String rule) {
+        if (rule.startsWith(REGEX_RULE_PREFIX)) {
+            Pattern.compile(rule.substring(REGEX_RULE_PREFIX.length()));
+        } else if (rule.startsWith(GAV_RULE_PREFIX)) {
+            GavRules.split(rule.substring(GAV_RULE_PREFIX.length()));
+        } else if (rule.startsWith("%")) {
+            PathPattern.compile(rule);
+        }
+    }
+
+    /**
+     * @param rules the rules, as written in approved content
+     */
+    RuleIndex(List<String> rules) {
+        patterns = new PathPattern[rules.size()];
+        for (int i = 0; i < patterns.length; i++) {
+            final String rule = rules.get(i);
+            if (rule.startsWith(REGEX_RULE_PREFIX)) {
+                regexRules.add(i, rule.substring(REGEX_RULE_PREFIX.length()));
+                continue;
+            }
+            if (rule.startsWith(GAV_RULE_PREFIX)) {
+                gavRules.add(i, rule.substring(GAV_RULE_PREFIX.length()));
+                continue;
+            }
+            final PathPattern pattern = PathPattern.compile(rule);
+            patterns[i] = pattern;
+            if (pattern.isRegex()) {
+                regexRules.add(i, pattern.getRegex());
+            } else if (pattern.isLiteral()) {
+                final String key = literalKey(pattern);
+                final int[] existing = literalRules.get(key);
+                literalRules.put(key, append(existing == null ? NO_RULES : existing, i));
+            } else {
+                TrieNode node = pattern.isRooted() ? rootedGlobs : relativeGlobs;
+                final int prefixLength = pattern.getLiteralSegmentCount();
+                for (int s = 0; s < prefixLength; s++) {
+                    node = node.getOrCreateChild(pattern.getSegment(s));
+                }
+                node.rules = append(node.rules, i);
+            }
+        }
+        regexRules.compile();
+    }
+
+    private RuleIndex(PathPattern[] patterns) {
+        this.patterns = patterns;
+    }
+
+    /**
+     * Reads an index {@link #write written} before; only regular expressions are compiled again.
+     * @param in where to read from
+     * @return the index
+     */
+    static RuleIndex read(DataInput in) throws IOException {
+        final RuleIndex result = new RuleIndex(new PathPattern[in.readInt()]);
+        for (int i = 0; i < result.patterns.length; i++) {
+            result.patterns[i] = in.readBoolean() ? PathPattern.read(in) : null;
+        }
+        final int literalCount = in.readInt();
+        for (int i = 0; i < literalCount; i++) {
+            result.literalRules.put(in.readUTF(), readInts(in));
+        }
+        result.rootedGlobs.read(in);
+        result.relativeGlobs.read(in);
+        result.regexRules.read(in);
+        result.gavRules.read(in);
+        return result;
+    }
+
+    /**
+     * Writes the compiled form of this index, for {@link #read}.
+     * @param out where to write
+     */
+    void write(DataOutput out) throws IOException {
+        out.writeInt(patterns.length);
+        for (PathPattern pattern : patterns) {
+            out.writeBoolean(pattern != null);
+            if (pattern != null) {
+                pattern.write(out);
+            }
+        }
+        out.writeInt(literalRules.size());
+        for (Map.Entry<String, int[]> entry : literalRules.entrySet()) {
+            out.writeUTF(entry.getKey());
+            writeInts(out, entry.getValue());
+        }
+        rootedGlobs.write(out);
+        relativeGlobs.write(out);
+        regexRules.write(out);
+        gavRules.write(out);
+    }
+
+    static void writeInts(DataOutput out, int[] values) throws IOException {
+        out.writeInt(values.length);
+        for (int value : values) {
+            out.writeInt(value);
+        }
+    }
+
+    static int[] readInts(DataInput in) throws IOException {
+        final int[] result = new int[in.readInt()];
+        for (int i = 0; i < result.length; i++) {
+            result[i] = in.readInt();
+        }
+        return result;
+    }
+
+    /**
+     * @return number of indexed rules
+     */
+    int size() {
+        return patterns.length;
+    }
+
+    /**
+     * Finds all rules matching given path, and {@link RuleHits#add adds} them to <code>hits</code>.
+     * Can be called from multiple threads concurrently, each with its own <code>hits</code>.
+     *
+     * @param path the path to match
+     * @param coordinates maven coordinates of the entry, for <code>gav:</code> rules
+     * @param hits receives the matching rules
+     */
+    void match(String path, List<MavenCoordinates> coordinates, RuleHits hits) {
+        final int[] literals = literalRules.get(normalize(path));
+        if (literals != null) {
+            for (int rule : literals) {
+                hits.add(rule);
+            }
+        }
+        final boolean rooted = path.length() > 0 && path.charAt(0) == SEPARATOR;
+        TrieNode node = rooted ? rootedGlobs : relativeGlobs;
+        int pos = 0;
+        while (node != null) {
+            tryRules(node.rules, path, hits);
+            pos = skipSeparators(path, pos);
+            if (pos == path.length() || node.children == null) break;
+            int end = path.indexOf(SEPARATOR, pos);
+            if (end < 0) {
+                end = path.length();
+            }
+            node = node.children.get(path.substring(pos, end));
+            pos = end;
+        }
+        regexRules.match(path, hits);
+        gavRules.match(coordinates, hits);
+    }
+
+    private void tryRules(int[] rules, String path, RuleHits hits) {
+        for (int rule : rules) {
+            if (patterns[rule].matches(path)) {
+                hits.add(rule);
+            }
+        }
+    }
+
+    /**
+     * @return the path with repeated and trailing separators removed; as the pattern tokenizer treats them
+     */
+    static String normalize(String path) {
+        final int length = path.length();
+        if (path.indexOf("//") < 0 && (length <= 1 || path.charAt(length - 1) != SEPARATOR)) {
+            return path;
+        }
+        final StringBuilder sb = new StringBuilder(length);
+        for (int i = 0; i < length; i++) {
+            final char c = path.charAt(i);
+            if (c == SEPARATOR && sb.length() > 0 && sb.charAt(sb.length() - 1) == SEPARATOR) continue;
+            sb.append(c);
+        }
+        if (sb.length() > 1 && sb.charAt(sb.length() - 1) == SEPARATOR) {
+            sb.setLength(sb.length() - 1);
+        }
+        return sb.toString();
+    }
+
+    private static String literalKey(PathPattern pattern) {
+        final StringBuilder sb = new StringBuilder();
+        if (pattern.isRooted()) {
+            sb.append(SEPARATOR);
+        }
+        for (int i = 0; i < pattern.getSegmentCount(); i++) {
+            if (i > 0) {
+                sb.append(SEPARATOR);
+            }
+            sb.append(pattern.getSegment(i));
+        }
+        return sb.toString();
+    }
+
+    private static int skipSeparators(String path, int pos) {
+        int result = pos;
+        while (result < path.length() && path.charAt(result) == SEPARATOR) {
+            result++;
+        }
+        return result;
+    }
+
+    private static int[] append(int[] array, int value) {
+        final int[] result = new int[array.length + 1];
+        System.arraycopy(array, 0, result, 0, array.length);
+        result[array.length] = value;
+        return result;
+    }
+
+    private static class TrieNode {
+        int[] rules = NO_RULES;
+        Map<String, TrieNode> children;
+
+        TrieNode getOrCreateChild(String segment) {
+            if (children == null) {
+                children = new HashMap<String, TrieNode>();
+            }
+            TrieNode child = children.get(segment);
+            if (child == null) {
+                child = new TrieNode();
+                children.put(segment, child);
+            }
+            return child;
+        }
+
+        void write(DataOutput out) throws IOException {
+            writeInts(out, rules);
+            out.writeInt(children == null ? 0 : children.size());
+            if (children != null) {
+                for (Map.Entry<String, TrieNode> entry : children.entrySet()) {
+                    out.writeUTF(entry.getKey());
+                    entry.getValue().write(out);
+                }
+            }
+        }
+
+        void read(DataInput in) throws IOException {
+            rules = readInts(in);
+            final int childCount = in.readInt();
+            for (int i = 0; i < childCount; i++) {
+                getOrCreateChild(in.readUTF()).read(in);
+            }
+        }
+    }
+}
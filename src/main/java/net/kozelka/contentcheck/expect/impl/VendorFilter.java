@@ -1,16 +1,14 @@
 package net.kozelka.contentcheck.expect.impl;
 
-import java.io.File;
-import java.io.FileOutputStream;
 import java.io.IOException;
 import java.io.InputStream;
-import java.util.UUID;
 import java.util.jar.Attributes;
 import java.util.jar.JarFile;
+import java.util.jar.JarInputStream;
 import java.util.jar.Manifest;
+import java.util.zip.ZipEntry;
 import net.kozelka.contentcheck.introspection.ContentIntrospector;
 import net.kozelka.contentcheck.util.EventSink;
-import org.codehaus.plexus.util.IOUtil;
 
 /**
  * Determines if an entry is matching given vendor.
@@ -53,22 +51,16 @@ public class VendorFilter implements ContentIntrospector.EntryContentFilter {
 
     public boolean accept(String entryName, InputStream entryContentStream) throws IOException {
         if (!entryName.endsWith(".jar")) return true;
-        //todo avoid the need for temporary file
-        final File tempFile = copyStreamToTemporaryFile(entryName, entryContentStream);
-        tempFile.deleteOnExit();
-        final boolean vendorArchive = checkArchiveManifest(entryName, tempFile);
-        tempFile.delete();//only for sure if the plugin is used in long live JVM
+        final boolean vendorArchive = checkArchiveManifest(entryName, entryContentStream);
         return !vendorArchive; // we want matching vendors to be ignored
     }
 
     /**
      * @return true when vendorId matches with jar's manifest otherwise false
      */
-    private boolean checkArchiveManifest(final String jarPath, File tempJAR) {
-        JarFile jarFile = null;
+    private boolean checkArchiveManifest(final String jarPath, InputStream jarContentStream) {
         try {
-            jarFile = new JarFile(tempJAR);
-            final Manifest manifest = jarFile.getManifest();
+            final Manifest manifest = readManifest(jarContentStream);
             if(manifest != null) {
                 final Attributes mainAttributes = manifest.getMainAttributes();
                 if(mainAttributes != null) {
@@ -76,30 +68,29 @@ public class VendorFilter implements ContentIntrospector.EntryContentFilter {
                     return vendorId.equals(vendor);
                 }
             }
-
         } catch (IOException e) {
             events.fire.cannotCheckManifest(jarPath, e);
-        } finally {
-            if(jarFile != null) {
-                try {
-                    jarFile.close();
-                } catch (IOException e) {
-                    events.fire.cannotClose(jarPath, e);
-                }
-            }
         }
         return false;
     }
 
-    private File copyStreamToTemporaryFile(final String jarPath, final InputStream archiveInputStream) throws IOException {
-        final File tempFile = File.createTempFile(UUID.randomUUID().toString(), "jar");
-        final FileOutputStream fos = new  FileOutputStream(tempFile);
-        try {
-            events.fire.checkingInTmpfile(jarPath, tempFile);
-            IOUtil.copy(archiveInputStream, fos);
-            return tempFile;
-        } finally {
-            fos.close();
+    /**
+     * Reads the manifest directly from the jar stream, without copying the jar to a temporary file.
+     * The stream is not closed.
+     */
+    private static Manifest readManifest(InputStream jarContentStream) throws IOException {
+        final JarInputStream jis = new JarInputStream(jarContentStream, false);
+        final Manifest manifest = jis.getManifest();
+        if (manifest != null) {
+            return manifest;
+        }
+        // JarInputStream only finds the manifest among the first entries; look further in unusually ordered jars
+        ZipEntry entry;
+        while ((entry = jis.getNextEntry()) != null) {
+            if (JarFile.MANIFEST_NAME.equalsIgnoreCase(entry.getName())) {
+                return new Manifest(jis);
+            }
         }
+        return null;
     }
 }
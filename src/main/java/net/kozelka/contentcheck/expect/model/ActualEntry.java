@@ -1,5 +1,9 @@
 package net.kozelka.contentcheck.expect.model;
 
+import java.util.Collections;
+import java.util.List;
+import net.kozelka.contentcheck.introspection.MavenCoordinates;
+
 /**
  * Represents the entry actually found in its container (like WAR file).
  * It is supposed to come with as much information as it is possible to obtain 'cheaply'.
@@ -8,8 +12,9 @@ package net.kozelka.contentcheck.expect.model;
 public class ActualEntry {
 
     private String uri;
+    private List<MavenCoordinates> coordinates = Collections.emptyList();
 
-    //TODO add other fields - maven coordinates, license, md5, sha1, ...
+    //TODO add other fields - license, md5, sha1, ...
 
     /**
      * @return relative path within the container
@@ -22,6 +27,17 @@ public class ActualEntry {
         this.uri = uri;
     }
 
+    /**
+     * @return maven coordinates found inside the entry; empty if not known
+     */
+    public List<MavenCoordinates> getCoordinates() {
+        return coordinates;
+    }
+
+    public void setCoordinates(List<MavenCoordinates> coordinates) {
+        this.coordinates = coordinates;
+    }
+
     @Override
     public String toString() {
         return "ActualEntry{" +
@@ -1,35 +1,85 @@
 package net.kozelka.contentcheck.expect.util;
 
 import java.io.File;
-import java.io.FileWriter;
+import java.io.FileNotFoundException;
 import java.io.IOException;
 import java.util.ArrayList;
 import java.util.Collection;
 import java.util.Collections;
-import java.util.Comparator;
 import java.util.List;
 import net.kozelka.contentcheck.expect.model.ActualEntry;
+import org.codehaus.plexus.util.DirectoryScanner;
 
 public final class ExpectUtils {
     private ExpectUtils() {}
 
+    /**
+     * Writes given entries into a listing, sorted by path.
+     * @see ListingWriter
+     */
     public static void generateListing(Collection<ActualEntry> actualEntries, File generatedFile) throws IOException {
-        final List<ActualEntry> sortedEntries = new ArrayList<ActualEntry>(actualEntries);
-        Collections.sort(sortedEntries, new Comparator<ActualEntry>() {
-            public int compare(ActualEntry o1, ActualEntry o2) {
-                return o1.getUri().compareTo(o2.getUri());
-            }
-        });
-        generatedFile.getParentFile().mkdirs();
-        final FileWriter writer = new FileWriter(generatedFile);
+        final ListingWriter writer = new ListingWriter(generatedFile);
         try {
-            writer.write(String.format("#%n# Edit this file to approve or unpraprove individual libraries; will be checked by contentcheck-maven-plugin.%n#%n"));
-            writer.write(String.format("# Keep the entries sorted alphabetically for easier eye-seeking.%n#%n"));
-            for (final ActualEntry actualEntry : sortedEntries) {
-                writer.write(String.format("%s%n", actualEntry.getUri()));
+            for (final ActualEntry actualEntry : actualEntries) {
+                writer.add(actualEntry.getUri());
             }
-        } finally {
             writer.close();
+        } finally {
+            writer.discard();
+        }
+    }
+
+    /**
+     * Resolves a source given by path or Ant-like pattern, like <code>target/dist/*.zip</code>.
+     * @param basedir the directory against which relative items are resolved
+     * @param item path or pattern of files and directories
+     * @return existing files and directories, sorted by name; empty when a pattern matches nothing
+     * @throws FileNotFoundException if the item is a path, without wildcards, that does not exist
+     */
+    public static List<File> resolveSourceFiles(File basedir, String item) throws FileNotFoundException {
+        final String path = item.trim().replace('\\', '/');
+        // the leading segments without wildcards select the directory to scan
+        int wildcard = path.length();
+        for (int i = 0; i < path.length(); i++) {
+            final char c = path.charAt(i);
+            if (c == '*' || c == '?') {
+                wildcard = i;
+                break;
+            }
         }
+        if (wildcard == path.length()) {
+            final File file = resolve(basedir, path);
+            if (!file.exists()) {
+                throw new FileNotFoundException(file.getAbsolutePath());
+            }
+            return Collections.singletonList(file);
+        }
+        final int split = path.lastIndexOf('/', wildcard - 1) + 1;
+        final File dir = resolve(basedir, path.substring(0, split));
+        if (!dir.isDirectory()) {
+            return Collections.emptyList();
+        }
+        final DirectoryScanner scanner = new DirectoryScanner();
+        scanner.setBasedir(dir);
+        scanner.setIncludes(new String[]{path.substring(split)});
+        scanner.scan();
+        final List<String> names = new ArrayList<String>();
+        Collections.addAll(names, scanner.getIncludedFiles());
+        for (String name : scanner.getIncludedDirectories()) {
+            if (name.length() > 0) {
+                names.add(name);
+            }
+        }
+        Collections.sort(names);
+        final List<File> result = new ArrayList<File>(names.size());
+        for (String name : names) {
+            result.add(new File(dir, name));
+        }
+        return result;
+    }
+
+    private static File resolve(File basedir, String path) {
+        final File file = new File(path);
+        return file.isAbsolute() ? file : new File(basedir, path);
     }
 }
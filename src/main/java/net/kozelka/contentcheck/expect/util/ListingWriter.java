@@ -0,0 +1,204 @@
+package net.kozelka.contentcheck.expect.util;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.BufferedWriter;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.EOFException;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStreamWriter;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.PriorityQueue;
+import net.kozelka.contentcheck.util.UpdatingFileOutputStream;
+
+/**
+ * Writes a content listing from entry paths added in any order; the listing is sorted alphabetically.
+ * <p>Up to {@link #setMaxEntriesInMemory maxEntriesInMemory} paths are sorted in memory.
+ * Beyond that, sorted runs are spilled to temporary files, and merged when the listing is {@link #close closed};
+ * so the heap stays bounded regardless of the number of entries.
+ * Temporary files are deleted by {@link #close}, or by {@link #discard} when the listing is abandoned.</p>
+ * <p>An existing listing with the same content is left untouched, see {@link UpdatingFileOutputStream}.</p>
+ */
+public class ListingWriter {
+    public static final int DEFAULT_MAX_ENTRIES_IN_MEMORY = 100000;
+
+    private final File listingFile;
+    private int maxEntriesInMemory = DEFAULT_MAX_ENTRIES_IN_MEMORY;
+    private File tempDirectory;
+    private String[] buffer;
+    private int bufferCount;
+    private final List<File> runs = new ArrayList<File>();
+    private int count;
+    private boolean changed;
+
+    /**
+     * @param listingFile the listing to write; its directory is created if necessary
+     */
+    public ListingWriter(File listingFile) {
+        this.listingFile = listingFile;
+    }
+
+    /**
+     * @param maxEntriesInMemory how many paths are sorted in memory before spilling them to a temporary file
+     */
+    public void setMaxEntriesInMemory(int maxEntriesInMemory) {
+        if (maxEntriesInMemory < 1) {
+            throw new IllegalArgumentException("maxEntriesInMemory must be positive: " + maxEntriesInMemory);
+        }
+        this.maxEntriesInMemory = maxEntriesInMemory;
+    }
+
+    /**
+     * @param tempDirectory where to spill sorted runs; null (the default) for the system temporary directory
+     */
+    public void setTempDirectory(File tempDirectory) {
+        this.tempDirectory = tempDirectory;
+    }
+
+    /**
+     * @return number of paths added so far
+     */
+    public int getCount() {
+        return count;
+    }
+
+    /**
+     * @return true if the listing file was written by {@link #close}, false if it already had the same content
+     */
+    public boolean isChanged() {
+        return changed;
+    }
+
+    public void add(String path) throws IOException {
+        if (buffer == null) {
+            buffer = new String[Math.min(maxEntriesInMemory, 1024)];
+        } else if (bufferCount == buffer.length) {
+            if (bufferCount >= maxEntriesInMemory) {
+                spill();
+            } else {
+                buffer = Arrays.copyOf(buffer, Math.min(maxEntriesInMemory, buffer.length * 2));
+            }
+        }
+        buffer[bufferCount++] = path;
+        count++;
+    }
+
+    private void spill() throws IOException {
+        Arrays.sort(buffer, 0, bufferCount);
+        final File run = File.createTempFile(listingFile.getName(), ".run", tempDirectory);
+        runs.add(run);
+        final DataOutputStream out = new DataOutputStream(new BufferedOutputStream(new FileOutputStream(run)));
+        try {
+            for (int i = 0; i < bufferCount; i++) {
+                out.writeUTF(buffer[i]);
+                buffer[i] = null;
+            }
+        } finally {
+            out.close();
+        }
+        bufferCount = 0;
+    }
+
+    /**
+     * Writes the listing, merging spilled runs if any, and deletes the temporary files.
+     */
+    public void close() throws IOException {
+        if (buffer != null) {
+            Arrays.sort(buffer, 0, bufferCount);
+        }
+        final PriorityQueue<Run> queue = new PriorityQueue<Run>(runs.size() + 1);
+        try {
+            for (File run : runs) {
+                final Run r = new Run(new DataInputStream(new BufferedInputStream(new FileInputStream(run))));
+                if (r.advance()) {
+                    queue.add(r);
+                } else {
+                    r.in.close();
+                }
+            }
+            final UpdatingFileOutputStream file = new UpdatingFileOutputStream(listingFile);
+            try {
+                final BufferedWriter writer = new BufferedWriter(new OutputStreamWriter(file));
+                writer.write("#");
+                writer.newLine();
+                writer.write("# Edit this file to approve or unpraprove individual libraries; will be checked by contentcheck-maven-plugin.");
+                writer.newLine();
+                writer.write("#");
+                writer.newLine();
+                writer.write("# Keep the entries sorted alphabetically for easier eye-seeking.");
+                writer.newLine();
+                writer.write("#");
+                writer.newLine();
+                int next = 0;
+                while (next < bufferCount || !queue.isEmpty()) {
+                    final Run head = queue.peek();
+                    if (head == null || (next < bufferCount && buffer[next].compareTo(head.current) <= 0)) {
+                        writer.write(buffer[next++]);
+                    } else {
+                        queue.poll();
+                        writer.write(head.current);
+                        if (head.advance()) {
+                            queue.add(head);
+                        } else {
+                            head.in.close();
+                        }
+                    }
+                    writer.newLine();
+                }
+                writer.close();
+                changed = file.isChanged();
+            } finally {
+                file.discard();
+            }
+        } finally {
+            for (Run r : queue) {
+                r.in.close();
+            }
+            discard();
+        }
+    }
+
+    /**
+     * Deletes the temporary files and forgets added paths, without writing the listing.
+     * Does nothing after {@link #close}; so it can be called in a <code>finally</code> block.
+     */
+    public void discard() {
+        for (File run : runs) {
+            run.delete();
+        }
+        runs.clear();
+        buffer = null;
+        bufferCount = 0;
+    }
+
+    /**
+     * One spilled run, positioned at its smallest not yet written path.
+     */
+    private static class Run implements Comparable<Run> {
+        final DataInputStream in;
+        String current;
+
+        Run(DataInputStream in) {
+            this.in = in;
+        }
+
+        boolean advance() throws IOException {
+            try {
+                current = in.readUTF();
+                return true;
+            } catch (EOFException e) {
+                return false;
+            }
+        }
+
+        public int compareTo(Run o) {
+            return current.compareTo(o.current);
+        }
+    }
+}
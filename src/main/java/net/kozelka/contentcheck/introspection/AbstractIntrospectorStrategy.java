@@ -0,0 +1,51 @@
+package net.kozelka.contentcheck.introspection;
+
+import java.io.File;
+import java.io.FilterInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.LinkedHashSet;
+import java.util.Set;
+
+/**
+ * Implements the one-shot operations of {@link IntrospectorInputStrategy} on top of its {@link #open(File) session}.
+ */
+abstract class AbstractIntrospectorStrategy implements IntrospectorInputStrategy {
+
+    public Set<String> list(File containerFile) throws IOException {
+        final Set<String> entries = new LinkedHashSet<String>();
+        final IntrospectionSession session = open(containerFile);
+        try {
+            final EntryCursor cursor = session.entries();
+            EntryInfo entry;
+            while ((entry = cursor.next()) != null) {
+                entries.add(entry.getPath());
+            }
+        } finally {
+            session.close();
+        }
+        return entries;
+    }
+
+    public InputStream getInputStream(File containerFile, String entryPath) throws IOException {
+        final IntrospectionSession session = open(containerFile);
+        final InputStream entryStream;
+        try {
+            entryStream = session.getInputStream(entryPath);
+        } catch (IOException e) {
+            session.close();
+            throw e;
+        }
+        // the session lives as long as the returned stream
+        return new FilterInputStream(entryStream) {
+            @Override
+            public void close() throws IOException {
+                try {
+                    super.close();
+                } finally {
+                    session.close();
+                }
+            }
+        };
+    }
+}
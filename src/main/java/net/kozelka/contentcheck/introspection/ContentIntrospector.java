@@ -1,11 +1,26 @@
 package net.kozelka.contentcheck.introspection;
 
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
 import java.io.File;
 import java.io.FilenameFilter;
+import java.io.FilterInputStream;
 import java.io.IOException;
 import java.io.InputStream;
+import java.io.InterruptedIOException;
+import java.io.SequenceInputStream;
+import java.util.Collections;
+import java.util.LinkedList;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipInputStream;
 import net.kozelka.contentcheck.util.EventSink;
-import org.codehaus.plexus.util.SelectorUtils;
+import net.kozelka.contentcheck.util.PathPattern;
 
 /**
  * This introspector captures all passed entries by their paths.
@@ -16,20 +31,47 @@ public class ContentIntrospector {
             return name.endsWith(".jar");
         }
     };
+    /**
+     * Accepts archives that typically contain other archives.
+     */
+    public static final FilenameFilter ISCONTAINER_FILTER = new FilenameFilter() {
+        public boolean accept(File dir, String name) {
+            return name.endsWith(".ear") || name.endsWith(".war") || name.endsWith(".zip");
+        }
+    };
+    /**
+     * Separates the path of a nested archive from the path of an entry inside it.
+     */
+    public static final String NESTED_SEPARATOR = "!/";
+    private static final List<MavenCoordinates> NO_COORDINATES = Collections.emptyList();
+    /**
+     * Limits entries waiting for delivery in {@link #walkParallel}, per thread.
+     */
+    private static final int PENDING_PER_THREAD = 64;
+    /**
+     * Limits the bytes of one entry kept for reading it again; an entry read further than that is opened again instead.
+     */
+    private static final int REPLAY_LIMIT = 1024 * 1024;
     private EventSink<Events> events = EventSink.create(Events.class);
     private FilenameFilter entryNameFilter = ISJAR_FILTER;
     private EntryContentFilter entryContentFilter;
     private File sourceFile;
-    private IntrospectorInputStrategy walker;
+    private int parallelism = 1;
+    private boolean recursive;
+    private FilenameFilter nestedArchiveFilter = ISCONTAINER_FILTER;
+    private boolean readCoordinates;
+    private File indexFile;
+    private String filterConfiguration;
 
     public EventSink<Events> getEvents() {
         return events;
     }
 
     public void setCheckFilesPattern(final String checkFilesPattern) {
+        final PathPattern pattern = PathPattern.compile("/" + checkFilesPattern);
         setEntryNameFilter(new FilenameFilter() {
             public boolean accept(File dir, String name) {
-                return SelectorUtils.matchPath("/" + checkFilesPattern, "/" + name);
+                return pattern.matchesSegments(name);
             }
         });
     }
@@ -42,17 +84,82 @@ public class ContentIntrospector {
         this.entryContentFilter = entryContentFilter;
     }
 
+    /**
+     * Sets how many threads evaluate the {@link #setEntryContentFilter entry content filter},
+     * and how many threads list a directory source.
+     * With value greater than 1, the filter must be thread-safe.
+     * Events about entries are always fired from the walking thread, in the order of entries in the source.
+     * @param parallelism number of threads; 1 (the default) does everything in the walking thread
+     */
+    public void setParallelism(int parallelism) {
+        if (parallelism < 1) {
+            throw new IllegalArgumentException("parallelism must be positive: " + parallelism);
+        }
+        this.parallelism = parallelism;
+    }
+
+    /**
+     * Enables walking into archives nested in the source, like WARs and JARs in an EAR.
+     * Nested archives are read directly from the enclosing stream, without temporary files.
+     * @param recursive true to walk into archives accepted by {@link #setNestedArchiveFilter nestedArchiveFilter}
+     */
+    public void setRecursive(boolean recursive) {
+        this.recursive = recursive;
+    }
+
+    /**
+     * Selects the entries that are walked into in {@link #setRecursive recursive} mode;
+     * nested entries are passed with their virtual path.
+     * Archives skipped by the {@link #setEntryContentFilter content filter} are never walked into.
+     * @param nestedArchiveFilter the filter; default is {@link #ISCONTAINER_FILTER}
+     */
+    public void setNestedArchiveFilter(FilenameFilter nestedArchiveFilter) {
+        this.nestedArchiveFilter = nestedArchiveFilter;
+    }
+
+    /**
+     * Enables reading {@link MavenCoordinates} of processed JAR entries, from the <code>pom.properties</code> files inside them.
+     * Coordinates are reported by {@link Events#foundCoordinates} right before {@link Events#processEntry}, during the same walk.
+     * @param readCoordinates true to read coordinates
+     */
+    public void setReadCoordinates(boolean readCoordinates) {
+        this.readCoordinates = readCoordinates;
+    }
+
+    public boolean isReadCoordinates() {
+        return readCoordinates;
+    }
+
+    /**
+     * Makes walks of a directory source incremental, keeping a {@link DirectoryIndex} of each walk for the next one.
+     * Directories that did not change are not listed again, and files that did not change are not read again;
+     * their events are replayed instead, so that the walk fires the same events as a full one.
+     * Archive sources are always walked in full.
+     * @param indexFile where to keep the index; null to disable
+     * @param filterConfiguration identifies the configuration of entry name and content filters;
+     *                            remembered events are only replayed while it does not change
+     */
+    public void setIndexFile(File indexFile, String filterConfiguration) {
+        this.indexFile = indexFile;
+        this.filterConfiguration = filterConfiguration;
+    }
+
     public File getSourceFile() {
         return sourceFile;
     }
 
     public void setSourceFile(File sourceFile) {
         this.sourceFile = sourceFile;
+    }
+
+    private IntrospectorInputStrategy createStrategy(IncrementalWalk incremental) {
+        if (incremental != null) {
+            return new DirectoryIntrospectorStrategy(parallelism, incremental.previousIndex, incremental.index);
+        }
         if (sourceFile.isDirectory()) {
-            walker = new DirectoryIntrospectorStrategy();
-        } else {
-            walker = new ZipArchiveIntrospectorStrategy();
+            return new DirectoryIntrospectorStrategy(parallelism);
         }
+        return new ZipArchiveIntrospectorStrategy();
     }
 
     /**
@@ -60,43 +167,595 @@ public class ContentIntrospector {
      * and is not a vendor archive (in case we care)
      * the entry will be delegated to  {@link net.kozelka.contentcheck.introspection.ContentIntrospector.Events#processEntry(String)}
      * for further processing.
+     * The source is opened only once for the whole walk, and closed before returning.
+     * Entries are streamed in their natural order, without collecting them first.
+     * In {@link #setRecursive recursive} mode, the content of each nested archive follows right after the archive itself.
      *
      * @return the total number of processed entries, including skipped ones.
      */
     public final int walk() throws IOException {
         events.fire.readingSourceFile(sourceFile);
+        IncrementalWalk incremental = null;
+        if (indexFile != null && sourceFile.isDirectory()) {
+            final String configuration = filterConfiguration + "|coordinates=" + readCoordinates + "|recursive=" + recursive;
+            incremental = new IncrementalWalk(DirectoryIndex.read(indexFile, configuration),
+                new DirectoryIndex(configuration, System.currentTimeMillis()));
+            events.addListener(incremental);
+        }
+        final int totalCnt;
+        final IntrospectionSession session = createStrategy(incremental).open(sourceFile);
+        try {
+            if ((entryContentFilter != null || readCoordinates) && parallelism > 1) {
+                totalCnt = walkParallel(session, incremental);
+            } else {
+                totalCnt = walkSerial(session, incremental);
+            }
+        } finally {
+            session.close();
+            if (incremental != null) {
+                events.removeListener(incremental);
+            }
+        }
+        // an unchanged source leaves the index untouched, unless the new walk time trusts more of its timestamps
+        if (incremental != null && (incremental.previousIndex == null || !incremental.index.hasSameRecords(incremental.previousIndex)
+            || !incremental.previousIndex.isTrustingAllRecords())) {
+            try {
+                incremental.index.write(indexFile);
+            } catch (IOException e) {
+                events.fire.cannotWriteIndex(indexFile, e);
+            }
+        }
+        return totalCnt;
+    }
+
+    private int walkSerial(IntrospectionSession session, IncrementalWalk incremental) throws IOException {
         int totalCnt = 0;
-        for (String entryName : walker.list(sourceFile)) {
+        final EntryCursor cursor = session.entries();
+        EntryInfo entry;
+        while ((entry = cursor.next()) != null) {
             totalCnt++;
+            if (incremental != null) {
+                final DirectoryIndex.FileRecord record = incremental.getUnchangedFile(entry);
+                if (record != null) {
+                    totalCnt += incremental.replay(entry, record);
+                    continue;
+                }
+                incremental.begin(entry);
+            }
+            final int walked = walkEntry(session, entry);
+            if (incremental != null) {
+                incremental.end(walked);
+            }
+            totalCnt += walked;
+        }
+        return totalCnt;
+    }
+
+    /**
+     * Filters one entry and fires its events.
+     * @return the number of entries walked in the nested archive, if any
+     */
+    private int walkEntry(IntrospectionSession session, EntryInfo entry) throws IOException {
+        final String entryName = entry.getPath();
 
-            // filter by entry name
-            if (!entryNameFilter.accept(sourceFile, entryName)) {
-                events.fire.skippingEntryNotMatching(entryName);
-                continue;
+        // filter by entry name
+        if (!entryNameFilter.accept(sourceFile, entryName)) {
+            events.fire.skippingEntryNotMatching(entryName);
+        } else {
+            final List<MavenCoordinates> coordinates = inspectContent(session, entry);
+            if (coordinates == null) {
+                // filter by entry content
+                events.fire.skippingEntryOwnModule(entryName);
+                return 0;
             }
+            fireProcessEntry(entryName, coordinates);
+        }
+        //
+        if (isNestedArchive(entryName, entry.isDirectory())) {
+            return walkNested(session, entryName);
+        }
+        return 0;
+    }
+
+    /**
+     * Evaluates the content filter on a pool of {@link #parallelism} threads, and reads coordinates there,
+     * while the results are delivered as events from the calling thread, in the original order.
+     * At most twice as many entries as there are threads are being inspected at any moment,
+     * and at most {@link #PENDING_PER_THREAD} times as many entries, including those not inspected, wait for delivery;
+     * so memory stays bounded while a slow entry holds the delivery.
+     * Nested archives are walked in the calling thread.
+     */
+    private int walkParallel(final IntrospectionSession session, IncrementalWalk incremental) throws IOException {
+        int totalCnt = 0;
+        final int maxInProgress = parallelism * 2;
+        final int maxPending = parallelism * PENDING_PER_THREAD;
+        final LinkedList<PendingEntry> pending = new LinkedList<PendingEntry>();
+        int inProgress = 0;
+        final ExecutorService executor = Executors.newFixedThreadPool(parallelism);
+        try {
+            final EntryCursor cursor = session.entries();
+            EntryInfo entry;
+            while ((entry = cursor.next()) != null) {
+                totalCnt++;
+                final String entryName = entry.getPath();
+                final DirectoryIndex.FileRecord record = incremental == null ? null : incremental.getUnchangedFile(entry);
+                if (record != null) {
+                    pending.add(new PendingEntry(entry, null, record));
+                } else if (!entryNameFilter.accept(sourceFile, entryName)) {
+                    pending.add(new PendingEntry(entry, null, null));
+                } else {
+                    final EntryInfo acceptedEntry = entry;
+                    final Future<List<MavenCoordinates>> verdict = executor.submit(new Callable<List<MavenCoordinates>>() {
+                        public List<MavenCoordinates> call() throws IOException {
+                            return inspectContent(session, acceptedEntry);
+                        }
+                    });
+                    pending.add(new PendingEntry(entry, verdict, null));
+                    inProgress++;
+                }
+                // deliver what is ready, and wait for the oldest entry when too many are in progress or pending
+                while (!pending.isEmpty() && (inProgress >= maxInProgress || pending.size() >= maxPending || pending.getFirst().isReady())) {
+                    final PendingEntry pendingEntry = pending.removeFirst();
+                    if (pendingEntry.verdict != null) {
+                        inProgress--;
+                    }
+                    totalCnt += deliver(session, pendingEntry, incremental);
+                }
+            }
+            while (!pending.isEmpty()) {
+                totalCnt += deliver(session, pending.removeFirst(), incremental);
+            }
+        } finally {
+            executor.shutdownNow();
+        }
+        return totalCnt;
+    }
+
+    /**
+     * Fires events for given entry, waiting for its content verdict if necessary.
+     * @return the number of entries walked in the nested archive, if any
+     */
+    private int deliver(IntrospectionSession session, PendingEntry pendingEntry, IncrementalWalk incremental) throws IOException {
+        if (pendingEntry.record != null) {
+            return incremental.replay(pendingEntry.entry, pendingEntry.record);
+        }
+        if (incremental != null) {
+            incremental.begin(pendingEntry.entry);
+        }
+        final int walked = deliverInspected(session, pendingEntry);
+        if (incremental != null) {
+            incremental.end(walked);
+        }
+        return walked;
+    }
+
+    private int deliverInspected(IntrospectionSession session, PendingEntry pendingEntry) throws IOException {
+        final String entryName = pendingEntry.entry.getPath();
+        if (pendingEntry.verdict == null) {
+            events.fire.skippingEntryNotMatching(entryName);
+        } else {
+            final List<MavenCoordinates> coordinates = getVerdict(entryName, pendingEntry.verdict);
+            if (coordinates == null) {
+                events.fire.skippingEntryOwnModule(entryName);
+                return 0;
+            }
+            fireProcessEntry(entryName, coordinates);
+        }
+        if (isNestedArchive(entryName, pendingEntry.entry.isDirectory())) {
+            return walkNested(session, entryName);
+        }
+        return 0;
+    }
+
+    private static List<MavenCoordinates> getVerdict(String entryName, Future<List<MavenCoordinates>> verdict) throws IOException {
+        try {
+            return verdict.get();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new InterruptedIOException("Interrupted while checking content of " + entryName);
+        } catch (ExecutionException e) {
+            final Throwable cause = e.getCause();
+            if (cause instanceof IOException) throw (IOException) cause;
+            if (cause instanceof RuntimeException) throw (RuntimeException) cause;
+            if (cause instanceof Error) throw (Error) cause;
+            final IOException ioe = new IOException("Cannot check content of " + entryName);
+            ioe.initCause(cause);
+            throw ioe;
+        }
+    }
 
-            // filter by entry content
-            if(entryContentFilter != null) {
-                final InputStream entryContentStream = walker.getInputStream(sourceFile, entryName);
-                try {
-                    if(!entryContentFilter.accept(entryName, entryContentStream)) {
+    /**
+     * Applies content filter and reads coordinates, from one stream of the entry.
+     * When both are needed, the bytes consumed by the filter are read again by the coordinates reader, followed by the rest of the stream;
+     * the filter usually stops at the manifest, close to the beginning of the archive.
+     * When the filter reads more than {@link #REPLAY_LIMIT}, like when the manifest is missing, the entry is opened again.
+     * @return coordinates of the entry (empty when not read), or null if the entry is rejected by content filter
+     */
+    private List<MavenCoordinates> inspectContent(IntrospectionSession session, EntryInfo entry) throws IOException {
+        final String entryName = entry.getPath();
+        final boolean coordinates = hasCoordinates(entryName, entry.isDirectory());
+        if (entryContentFilter == null && !coordinates) {
+            return NO_COORDINATES;
+        }
+        final InputStream entryContentStream = session.getInputStream(entryName);
+        InputStream reopened = null;
+        try {
+            InputStream coordinatesStream = entryContentStream;
+            if (entryContentFilter != null) {
+                final RecordingInputStream recording = coordinates ? new RecordingInputStream(entryContentStream) : null;
+                if (!entryContentFilter.accept(entryName, recording == null ? entryContentStream : recording)) {
+                    return null;
+                }
+                if (recording != null) {
+                    coordinatesStream = recording.replay(false);
+                    if (coordinatesStream == null) {
+                        reopened = session.getInputStream(entryName);
+                        coordinatesStream = reopened;
+                    }
+                }
+            }
+            return coordinates ? MavenCoordinates.readAll(coordinatesStream) : NO_COORDINATES;
+        } finally {
+            entryContentStream.close();
+            if (reopened != null) {
+                reopened.close();
+            }
+        }
+    }
+
+    private boolean hasCoordinates(String entryName, boolean directory) {
+        return readCoordinates && !directory && ISJAR_FILTER.accept(sourceFile, entryName);
+    }
+
+    private void fireProcessEntry(String entryName, List<MavenCoordinates> coordinates) {
+        for (MavenCoordinates c : coordinates) {
+            events.fire.foundCoordinates(entryName, c);
+        }
+        events.fire.processEntry(entryName);
+    }
+
+    private boolean isNestedArchive(String entryName, boolean directory) {
+        return recursive && !directory && nestedArchiveFilter.accept(sourceFile, entryName);
+    }
+
+    private int walkNested(IntrospectionSession session, String archiveEntryName) throws IOException {
+        final ZipInputStream zis = new ZipInputStream(session.getInputStream(archiveEntryName));
+        try {
+            return walkNested(session, archiveEntryName, zis);
+        } finally {
+            zis.close();
+        }
+    }
+
+    /**
+     * Walks an archive nested in the source, straight from its stream.
+     * Entries are named by virtual paths, like <code>web.war!/WEB-INF/lib/x.jar</code>.
+     * An entry that needs more than one of content filtering, reading coordinates and walking (like a nested archive in a nested archive)
+     * is given to these readers by {@link NestedContent}, so that at most {@link #REPLAY_LIMIT} bytes of it are held in memory.
+     */
+    private int walkNested(IntrospectionSession session, String archiveName, ZipInputStream zis) throws IOException {
+        int totalCnt = 0;
+        ZipEntry zipEntry;
+        while ((zipEntry = zis.getNextEntry()) != null) {
+            totalCnt++;
+            final String entryName = archiveName + NESTED_SEPARATOR + zipEntry.getName();
+            final boolean nestedArchive = isNestedArchive(entryName, zipEntry.isDirectory());
+            final NestedContent content = new NestedContent(session, entryName, zis);
+            try {
+                if (!entryNameFilter.accept(sourceFile, entryName)) {
+                    events.fire.skippingEntryNotMatching(entryName);
+                } else {
+                    final boolean coordinates = hasCoordinates(entryName, zipEntry.isDirectory());
+                    if (entryContentFilter != null && !entryContentFilter.accept(entryName, content.open(coordinates || nestedArchive))) {
                         events.fire.skippingEntryOwnModule(entryName);
                         continue;
                     }
-                } finally {
-                    entryContentStream.close();
+                    fireProcessEntry(entryName, coordinates ? MavenCoordinates.readAll(content.open(nestedArchive)) : NO_COORDINATES);
                 }
+                //
+                if (nestedArchive) {
+                    final ZipInputStream nested = new ZipInputStream(content.open(false));
+                    try {
+                        totalCnt += walkNested(session, entryName, nested);
+                    } finally {
+                        nested.close();
+                    }
+                }
+            } finally {
+                content.close();
             }
-            //
-            events.fire.processEntry(entryName);
         }
-
         return totalCnt;
     }
 
+    /**
+     * Opens an entry of the source again, by its virtual path, reading through the enclosing nested archives.
+     * @param entryName virtual path of a nested entry
+     * @return the content of the entry; closing it closes the whole chain
+     */
+    private static InputStream openNested(IntrospectionSession session, String entryName) throws IOException {
+        int end = entryName.indexOf(NESTED_SEPARATOR);
+        InputStream stream = session.getInputStream(entryName.substring(0, end));
+        boolean found = false;
+        try {
+            while (end >= 0) {
+                final int start = end + NESTED_SEPARATOR.length();
+                end = entryName.indexOf(NESTED_SEPARATOR, start);
+                final String name = entryName.substring(start, end < 0 ? entryName.length() : end);
+                final ZipInputStream zis = new ZipInputStream(stream);
+                stream = zis;
+                ZipEntry zipEntry;
+                do {
+                    zipEntry = zis.getNextEntry();
+                    if (zipEntry == null) {
+                        throw new IOException("Cannot open " + entryName + " again");
+                    }
+                } while (!zipEntry.getName().equals(name));
+            }
+            found = true;
+            return stream;
+        } finally {
+            if (!found) {
+                stream.close();
+            }
+        }
+    }
+
+    /**
+     * Gives the content of a nested entry to its readers, one after another, straight from the enclosing stream.
+     * The bytes read by one reader are kept for the next one, up to {@link #REPLAY_LIMIT};
+     * when a reader goes further, the next one gets the entry {@link #openNested opened again} from the source.
+     */
+    private static class NestedContent {
+        private final IntrospectionSession session;
+        private final String entryName;
+        private final ZipInputStream zis;
+        private boolean opened;
+        private RecordingInputStream recording;
+        private InputStream reopened;
+
+        NestedContent(IntrospectionSession session, String entryName, ZipInputStream zis) {
+            this.session = session;
+            this.entryName = entryName;
+            this.zis = zis;
+        }
+
+        /**
+         * @param readAgain true if another reader follows
+         * @return the whole content, for the next reader
+         */
+        InputStream open(boolean readAgain) throws IOException {
+            if (!opened) {
+                opened = true;
+                if (!readAgain) {
+                    return new UnclosableInputStream(zis);
+                }
+                recording = new RecordingInputStream(new UnclosableInputStream(zis));
+                return recording;
+            }
+            final InputStream replay = recording == null ? null : recording.replay(readAgain);
+            if (replay != null) {
+                return replay;
+            }
+            close();
+            reopened = openNested(session, entryName);
+            return reopened;
+        }
+
+        void close() throws IOException {
+            if (reopened != null) {
+                reopened.close();
+                reopened = null;
+            }
+        }
+    }
+
+    /**
+     * Protects the enclosing archive stream from being closed by nested readers.
+     */
+    private static class UnclosableInputStream extends FilterInputStream {
+        UnclosableInputStream(InputStream in) {
+            super(in);
+        }
+
+        @Override
+        public void close() {
+        }
+    }
+
+    /**
+     * Keeps the bytes read through it, up to {@link #REPLAY_LIMIT}, so that another reader can start over without opening the entry again.
+     */
+    private static class RecordingInputStream extends FilterInputStream {
+        /**
+         * Null once more than {@link #REPLAY_LIMIT} bytes were read.
+         */
+        private ByteArrayOutputStream recorded = new ByteArrayOutputStream();
+
+        RecordingInputStream(InputStream in) {
+            super(in);
+        }
+
+        @Override
+        public int read() throws IOException {
+            final int b = in.read();
+            if (b >= 0 && record(1)) {
+                recorded.write(b);
+            }
+            return b;
+        }
+
+        @Override
+        public int read(byte[] b, int off, int len) throws IOException {
+            final int n = in.read(b, off, len);
+            if (n > 0 && record(n)) {
+                recorded.write(b, off, n);
+            }
+            return n;
+        }
+
+        private boolean record(int n) {
+            if (recorded != null && recorded.size() + n > REPLAY_LIMIT) {
+                recorded = null;
+            }
+            return recorded != null;
+        }
+
+        @Override
+        public long skip(long n) throws IOException {
+            // skipped bytes must be recorded too
+            final byte[] buffer = new byte[(int) Math.min(n, 8192)];
+            final int skipped = read(buffer, 0, buffer.length);
+            return Math.max(skipped, 0);
+        }
+
+        @Override
+        public boolean markSupported() {
+            return false;
+        }
+
+        @Override
+        public void close() {
+        }
+
+        /**
+         * @param keepRecording true to keep recording the rest of the original stream, for another replay
+         * @return the whole content: the recorded bytes followed by the unread rest of the original stream;
+         * null if too much was read to keep it
+         */
+        InputStream replay(boolean keepRecording) {
+            if (recorded == null) return null;
+            return new SequenceInputStream(new ByteArrayInputStream(recorded.toByteArray()), keepRecording ? this : in);
+        }
+    }
+
+    /**
+     * @return true if the events of given entry depend on its content
+     */
+    private boolean isContentInspected(String entryName, boolean directory) {
+        if (directory) return false;
+        if (isNestedArchive(entryName, false)) return true;
+        return entryNameFilter.accept(sourceFile, entryName) && (entryContentFilter != null || hasCoordinates(entryName, false));
+    }
+
+    /**
+     * Replays the events of files that did not change since the previous walk,
+     * and records the events of other files with inspected content, for the next walk.
+     * Recording relies on all events of one entry being fired from the walking thread, before the next entry.
+     */
+    private class IncrementalWalk implements Events {
+        /**
+         * Null on the first walk.
+         */
+        final DirectoryIndex previousIndex;
+        final DirectoryIndex index;
+        private DirectoryIndex.FileRecord recording;
+
+        IncrementalWalk(DirectoryIndex previousIndex, DirectoryIndex index) {
+            this.previousIndex = previousIndex;
+            this.index = index;
+        }
+
+        DirectoryIndex.FileRecord getUnchangedFile(EntryInfo entry) {
+            return previousIndex == null ? null : previousIndex.getUnchangedFile(entry);
+        }
+
+        /**
+         * @return the number of entries walked in the nested archive, if any
+         */
+        int replay(EntryInfo entry, DirectoryIndex.FileRecord record) {
+            for (DirectoryIndex.RecordedEvent event : record.events) {
+                switch (event.type) {
+                    case DirectoryIndex.NOT_MATCHING:
+                        events.fire.skippingEntryNotMatching(event.entryName);
+                        break;
+                    case DirectoryIndex.OWN_MODULE:
+                        events.fire.skippingEntryOwnModule(event.entryName);
+                        break;
+                    case DirectoryIndex.COORDINATES:
+                        events.fire.foundCoordinates(event.entryName, event.coordinates);
+                        break;
+                    default:
+                        events.fire.processEntry(event.entryName);
+                }
+            }
+            index.files.put(entry.getPath(), record);
+            return record.walked;
+        }
+
+        void begin(EntryInfo entry) {
+            // files listed without attributes cannot be recognized as unchanged anyway
+            if (entry.getTime() >= 0 && isContentInspected(entry.getPath(), entry.isDirectory())) {
+                recording = new DirectoryIndex.FileRecord(entry.getSize(), entry.getTime());
+                index.files.put(entry.getPath(), recording);
+            }
+        }
+
+        void end(int walked) {
+            if (recording != null) {
+                recording.walked = walked;
+                recording = null;
+            }
+        }
+
+        private void record(byte type, String entryName, MavenCoordinates coordinates) {
+            if (recording != null) {
+                recording.events.add(new DirectoryIndex.RecordedEvent(type, entryName, coordinates));
+            }
+        }
+
+        public void readingSourceFile(File sourceFile) {
+        }
+
+        public void skippingEntryNotMatching(String entry) {
+            record(DirectoryIndex.NOT_MATCHING, entry, null);
+        }
+
+        public void skippingEntryOwnModule(String entry) {
+            record(DirectoryIndex.OWN_MODULE, entry, null);
+        }
+
+        public void cannotCheckManifest(String jarPath, Exception e) {
+        }
+
+        public void cannotWriteIndex(File indexFile, IOException e) {
+        }
+
+        public void foundCoordinates(String entryName, MavenCoordinates coordinates) {
+            record(DirectoryIndex.COORDINATES, entryName, coordinates);
+        }
+
+        public void processEntry(String entryName) {
+            record(DirectoryIndex.PROCESS, entryName, null);
+        }
+    }
+
+    private static class PendingEntry {
+        final EntryInfo entry;
+        /**
+         * Result of {@link #inspectContent}; null for entries skipped by name or replayed
+         */
+        final Future<List<MavenCoordinates>> verdict;
+        /**
+         * Events to replay, for entries that did not change since the previous walk
+         */
+        final DirectoryIndex.FileRecord record;
+
+        PendingEntry(EntryInfo entry, Future<List<MavenCoordinates>> verdict, DirectoryIndex.FileRecord record) {
+            this.entry = entry;
+            this.verdict = verdict;
+            this.record = record;
+        }
+
+        boolean isReady() {
+            return verdict == null || verdict.isDone();
+        }
+    }
+
     public interface EntryContentFilter {
         /**
          * Decides if given entry can be accepted, based on its name and content.
+         * Must be thread-safe when used with {@link ContentIntrospector#setParallelism parallelism} greater than 1.
          * @param entryName -
          * @param entryContentStream  the content stream; caller will handle both opening and closing it
          * @return false if the entry should be skipped
@@ -114,11 +773,23 @@ public class ContentIntrospector {
 
         void cannotCheckManifest(String jarPath, Exception e);
 
-        void cannotClose(String jarPath, IOException e);
-
-        void checkingInTmpfile(String jarPath, File tempFile);
+        /**
+         * Reports coordinates found in an entry that is going to be {@link #processEntry processed} right after.
+         * Only fired when {@link ContentIntrospector#setReadCoordinates reading coordinates} is enabled.
+         * @param entryName the entry
+         * @param coordinates one of the coordinates found inside the entry
+         */
+        void foundCoordinates(String entryName, MavenCoordinates coordinates);
 
         void processEntry(String entryName);
+
+        /**
+         * Reports that the {@link ContentIntrospector#setIndexFile index} of the walk could not be written;
+         * the walk itself is complete, only the next one cannot be incremental.
+         * @param indexFile the index file
+         * @param e the cause
+         */
+        void cannotWriteIndex(File indexFile, IOException e);
     }
 
 }
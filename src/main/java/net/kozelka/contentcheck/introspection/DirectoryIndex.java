@@ -0,0 +1,309 @@
+package net.kozelka.contentcheck.introspection;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import net.kozelka.contentcheck.util.UpdatingFileOutputStream;
+
+/**
+ * Remembers a walk of a directory source, so that the next walk can skip what did not change since.
+ * <ul>
+ *     <li>Children of each directory are remembered with the directory modification time.
+ *     While that does not change, the directory is not listed again,
+ *     and its files are only examined when their content was inspected by the previous walk.</li>
+ *     <li>For each file whose content was inspected (by content filter, for coordinates, or walked as nested archive),
+ *     the fired events are remembered with the file size and modification time.
+ *     While these do not change, the events are replayed instead of reading the file again.</li>
+ * </ul>
+ * Modification times too close to the previous walk are not trusted,
+ * as a change within the timestamp granularity of the filesystem would go unnoticed.
+ */
+class DirectoryIndex {
+    private static final int MAGIC = 0x43434449; // "CCDI"
+    private static final int VERSION = 1;
+    /**
+     * Modifications within this interval before the walk might not be reflected by timestamps.
+     */
+    private static final long TIMESTAMP_GRANULARITY = 2000;
+
+    static final byte NOT_MATCHING = 1;
+    static final byte OWN_MODULE = 2;
+    static final byte COORDINATES = 3;
+    static final byte PROCESS = 4;
+
+    private final String configuration;
+    private final long walkTime;
+    /**
+     * False when the file records were made with different configuration, and so cannot be used.
+     */
+    private boolean filesValid = true;
+    /**
+     * Directory records by directory path, which is empty for the base directory and ends with slash otherwise.
+     * Filled concurrently when the directory is listed in parallel.
+     */
+    final Map<String, DirectoryRecord> directories = new ConcurrentHashMap<String, DirectoryRecord>();
+    final Map<String, FileRecord> files = new HashMap<String, FileRecord>();
+
+    /**
+     * @param configuration identifies everything that the recorded events depend on, besides the file content
+     * @param walkTime when the walk started
+     */
+    DirectoryIndex(String configuration, long walkTime) {
+        this.configuration = configuration;
+        this.walkTime = walkTime;
+    }
+
+    /**
+     * @return the directory record, or null if the directory was not walked or has changed since
+     */
+    DirectoryRecord getUnchangedDirectory(String path, long time) {
+        final DirectoryRecord record = directories.get(path);
+        return record != null && record.time == time && isTrusted(time) ? record : null;
+    }
+
+    /**
+     * @return true if the file must be examined, because the previous walk inspected its content or cannot tell
+     */
+    boolean isInspected(String path) {
+        return !filesValid || files.containsKey(path);
+    }
+
+    /**
+     * @return the file record, or null if the file content was not inspected or might have changed since
+     */
+    FileRecord getUnchangedFile(EntryInfo entry) {
+        if (!filesValid || entry.isDirectory() || entry.getTime() < 0) {
+            return null;
+        }
+        final FileRecord record = files.get(entry.getPath());
+        return record != null && record.size == entry.getSize() && record.time == entry.getTime() && isTrusted(record.time) ? record : null;
+    }
+
+    /**
+     * Tells if this walk found the same as the previous one, so that the previous index can be kept,
+     * unless some of its records are not {@link #isTrustingAllRecords() trusted} yet.
+     * @param other the previous index
+     * @return true if all records are the same
+     */
+    boolean hasSameRecords(DirectoryIndex other) {
+        if (!configuration.equals(other.configuration) || !other.filesValid
+            || directories.size() != other.directories.size() || files.size() != other.files.size()) {
+            return false;
+        }
+        for (Map.Entry<String, DirectoryRecord> entry : directories.entrySet()) {
+            final DirectoryRecord record = entry.getValue();
+            final DirectoryRecord otherRecord = other.directories.get(entry.getKey());
+            if (otherRecord == null || record.time != otherRecord.time
+                || !Arrays.equals(record.names, otherRecord.names) || !Arrays.equals(record.directory, otherRecord.directory)) {
+                return false;
+            }
+        }
+        for (Map.Entry<String, FileRecord> entry : files.entrySet()) {
+            final FileRecord record = entry.getValue();
+            final FileRecord otherRecord = other.files.get(entry.getKey());
+            // replayed records are shared with the previous index
+            if (record == otherRecord) continue;
+            if (otherRecord == null || record.size != otherRecord.size || record.time != otherRecord.time
+                || record.walked != otherRecord.walked || record.events.size() != otherRecord.events.size()) {
+                return false;
+            }
+            for (int i = 0; i < record.events.size(); i++) {
+                final RecordedEvent event = record.events.get(i);
+                final RecordedEvent otherEvent = otherRecord.events.get(i);
+                if (event.type != otherEvent.type || !event.entryName.equals(otherEvent.entryName)
+                    || !String.valueOf(event.coordinates).equals(String.valueOf(otherEvent.coordinates))) {
+                    return false;
+                }
+            }
+        }
+        return true;
+    }
+
+    /**
+     * Tells if a later walk time would not make any more records usable.
+     * Records too close to the walk time are only trusted by an index written later, so such index must be rewritten.
+     * @return true if the timestamps of all records are trusted
+     */
+    boolean isTrustingAllRecords() {
+        for (DirectoryRecord record : directories.values()) {
+            if (!isTrusted(record.time)) return false;
+        }
+        for (FileRecord record : files.values()) {
+            if (!isTrusted(record.time)) return false;
+        }
+        return true;
+    }
+
+    private boolean isTrusted(long time) {
+        return time < walkTime - TIMESTAMP_GRANULARITY;
+    }
+
+    /**
+     * @param indexFile the index file
+     * @param configuration the current configuration; file records made with different one are not used
+     * @return the index, or null if it does not exist, cannot be opened or is damaged
+     */
+    static DirectoryIndex read(File indexFile, String configuration) throws IOException {
+        if (!indexFile.isFile()) {
+            return null;
+        }
+        final FileInputStream file;
+        try {
+            file = new FileInputStream(indexFile);
+        } catch (IOException e) {
+            // an unreadable index is as good as none
+            return null;
+        }
+        final DataInputStream in = new DataInputStream(new BufferedInputStream(file));
+        try {
+            if (in.readInt() != MAGIC || in.readInt() != VERSION) {
+                return null;
+            }
+            final DirectoryIndex result = new DirectoryIndex(in.readUTF(), in.readLong());
+            final int directoryCount = in.readInt();
+            for (int i = 0; i < directoryCount; i++) {
+                final String path = in.readUTF();
+                final long time = in.readLong();
+                final int childCount = in.readInt();
+                final String[] names = new String[childCount];
+                final boolean[] directory = new boolean[childCount];
+                for (int j = 0; j < childCount; j++) {
+                    names[j] = in.readUTF();
+                    directory[j] = in.readBoolean();
+                }
+                result.directories.put(path, new DirectoryRecord(time, names, directory));
+            }
+            final int fileCount = in.readInt();
+            for (int i = 0; i < fileCount; i++) {
+                final String path = in.readUTF();
+                final FileRecord record = new FileRecord(in.readLong(), in.readLong());
+                record.walked = in.readInt();
+                final int eventCount = in.readInt();
+                for (int j = 0; j < eventCount; j++) {
+                    final byte type = in.readByte();
+                    final String entryName = in.readUTF();
+                    MavenCoordinates coordinates = null;
+                    if (type == COORDINATES) {
+                        final String groupId = in.readUTF();
+                        final String artifactId = in.readUTF();
+                        coordinates = new MavenCoordinates(groupId, artifactId, in.readBoolean() ? in.readUTF() : null);
+                    }
+                    record.events.add(new RecordedEvent(type, entryName, coordinates));
+                }
+                result.files.put(path, record);
+            }
+            result.filesValid = result.configuration.equals(configuration);
+            return result;
+        } catch (IOException e) {
+            // truncated or otherwise damaged index is simply rebuilt
+            return null;
+        } finally {
+            in.close();
+        }
+    }
+
+    /**
+     * Writes the index atomically, so that concurrent builds never see it partially written.
+     * @param indexFile the index file
+     */
+    void write(File indexFile) throws IOException {
+        final UpdatingFileOutputStream file = new UpdatingFileOutputStream(indexFile);
+        try {
+            final DataOutputStream out = new DataOutputStream(new BufferedOutputStream(file));
+            out.writeInt(MAGIC);
+            out.writeInt(VERSION);
+            out.writeUTF(configuration);
+            out.writeLong(walkTime);
+            out.writeInt(directories.size());
+            for (Map.Entry<String, DirectoryRecord> entry : directories.entrySet()) {
+                final DirectoryRecord record = entry.getValue();
+                out.writeUTF(entry.getKey());
+                out.writeLong(record.time);
+                out.writeInt(record.names.length);
+                for (int i = 0; i < record.names.length; i++) {
+                    out.writeUTF(record.names[i]);
+                    out.writeBoolean(record.directory[i]);
+                }
+            }
+            out.writeInt(files.size());
+            for (Map.Entry<String, FileRecord> entry : files.entrySet()) {
+                final FileRecord record = entry.getValue();
+                out.writeUTF(entry.getKey());
+                out.writeLong(record.size);
+                out.writeLong(record.time);
+                out.writeInt(record.walked);
+                out.writeInt(record.events.size());
+                for (RecordedEvent event : record.events) {
+                    out.writeByte(event.type);
+                    out.writeUTF(event.entryName);
+                    if (event.type == COORDINATES) {
+                        out.writeUTF(event.coordinates.getGroupId());
+                        out.writeUTF(event.coordinates.getArtifactId());
+                        out.writeBoolean(event.coordinates.getVersion() != null);
+                        if (event.coordinates.getVersion() != null) {
+                            out.writeUTF(event.coordinates.getVersion());
+                        }
+                    }
+                }
+            }
+            out.close();
+        } finally {
+            file.discard();
+        }
+    }
+
+    static class DirectoryRecord {
+        final long time;
+        /**
+         * Names of children, sorted.
+         */
+        final String[] names;
+        final boolean[] directory;
+
+        DirectoryRecord(long time, String[] names, boolean[] directory) {
+            this.time = time;
+            this.names = names;
+            this.directory = directory;
+        }
+    }
+
+    static class FileRecord {
+        final long size;
+        final long time;
+        /**
+         * Number of entries walked inside the file, when it is a nested archive.
+         */
+        int walked;
+        final List<RecordedEvent> events = new ArrayList<RecordedEvent>();
+
+        FileRecord(long size, long time) {
+            this.size = size;
+            this.time = time;
+        }
+    }
+
+    static class RecordedEvent {
+        final byte type;
+        final String entryName;
+        /**
+         * Only for {@link #COORDINATES}.
+         */
+        final MavenCoordinates coordinates;
+
+        RecordedEvent(byte type, String entryName, MavenCoordinates coordinates) {
+            this.type = type;
+            this.entryName = entryName;
+            this.coordinates = coordinates;
+        }
+    }
+}
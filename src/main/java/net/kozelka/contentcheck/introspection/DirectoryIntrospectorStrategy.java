@@ -4,37 +4,268 @@ import java.io.File;
 import java.io.FileInputStream;
 import java.io.IOException;
 import java.io.InputStream;
-import java.util.HashSet;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Iterator;
 import java.util.List;
-import java.util.Set;
-import org.codehaus.plexus.util.FileUtils;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveTask;
 
 /**
  * Implementation of {@link IntrospectorInputStrategy} which can read the content of ordinary directory.
+ * The tree is walked in a single pass, reading the basic attributes of each file at most once.
+ * Directories are reported before their content, with trailing slash; siblings are sorted by name.
+ * With a {@link DirectoryIndex} of the previous walk, directories that did not change are not listed again.
  */
-class DirectoryIntrospectorStrategy implements IntrospectorInputStrategy {
+class DirectoryIntrospectorStrategy extends AbstractIntrospectorStrategy {
+    private final int parallelism;
+    private final DirectoryIndex previousIndex;
+    private final DirectoryIndex index;
 
-    public Set<String> list(File baseDirectory) throws IOException {
+    DirectoryIntrospectorStrategy() {
+        this(1);
+    }
+
+    /**
+     * @param parallelism with value greater than 1, whole tree is listed upfront by a {@link ForkJoinPool} of given parallelism;
+     *                    this pays off for wide trees on slow filesystems.
+     *                    With 1, directories are listed lazily, as the cursor reaches them.
+     */
+    DirectoryIntrospectorStrategy(int parallelism) {
+        this(parallelism, null, null);
+    }
+
+    /**
+     * @param parallelism see {@link #DirectoryIntrospectorStrategy(int)}
+     * @param previousIndex the index of previous walk, used to skip listing unchanged directories; can be null
+     * @param index receives directory records of this walk; can be null
+     */
+    DirectoryIntrospectorStrategy(int parallelism, DirectoryIndex previousIndex, DirectoryIndex index) {
+        this.parallelism = parallelism;
+        this.previousIndex = previousIndex;
+        this.index = index;
+    }
+
+    public IntrospectionSession open(final File baseDirectory) throws IOException {
         if (baseDirectory == null) {
             throw new IllegalArgumentException("containerFile cannot be null!");
-        };
+        }
         if (!baseDirectory.isDirectory()) {
             throw new IllegalArgumentException(baseDirectory.getAbsolutePath() + " is not a directory!");
         }
-        final Set<String> entries = new HashSet<String>();
-        entries.addAll(FileUtils.getFileNames(baseDirectory, null, null, false));
-        final List<String> directories = FileUtils.getDirectoryNames(baseDirectory, null, null, false);
-        // strangely, the empty string is returned in result, we have to remove it explicitly.
-        directories.remove("");
-        // directories does not have trailing slash, so we need to add it
-        for (String directory : directories) {
-            entries.add(directory + "/");
+        // plain directory has no resources to share between operations
+        return new IntrospectionSession() {
+            public EntryCursor entries() throws IOException {
+                final Path basePath = baseDirectory.toPath();
+                final long baseTime = Files.getLastModifiedTime(basePath).toMillis();
+                if (parallelism > 1) {
+                    return listInParallel(basePath, baseTime);
+                }
+                return new DirectoryCursor(basePath, baseTime);
+            }
+
+            public InputStream getInputStream(String entryPath) throws IOException {
+                return new FileInputStream(new File(baseDirectory, entryPath));
+            }
+
+            public void close() {
+            }
+        };
+    }
+
+    private EntryCursor listInParallel(Path baseDirectory, long baseTime) throws IOException {
+        final ForkJoinPool pool = new ForkJoinPool(parallelism);
+        final List<EntryInfo> entries;
+        try {
+            entries = pool.invoke(new ListingTask("", baseDirectory, baseTime));
+        } catch (ListingException e) {
+            throw e.getCause();
+        } finally {
+            pool.shutdown();
+        }
+        final Iterator<EntryInfo> iterator = entries.iterator();
+        return new EntryCursor() {
+            public EntryInfo next() {
+                return iterator.hasNext() ? iterator.next() : null;
+            }
+        };
+    }
+
+    private static Path[] listSorted(Path directory) throws IOException {
+        final List<Path> children = new ArrayList<Path>();
+        final DirectoryStream<Path> stream = Files.newDirectoryStream(directory);
+        try {
+            for (Path child : stream) {
+                children.add(child);
+            }
+        } finally {
+            stream.close();
+        }
+        final Path[] result = children.toArray(new Path[children.size()]);
+        Arrays.sort(result);
+        return result;
+    }
+
+    /**
+     * Lists the children of one directory, with their attributes.
+     * While the directory is unchanged since the previous walk, its remembered children are used instead of listing it,
+     * and only subdirectories and files with inspected content are examined; other files are passed with unknown size and time.
+     * @param prefix path of the directory within the source; empty for the base directory
+     * @param directory the directory
+     * @param time modification time of the directory
+     */
+    private Listing list(String prefix, Path directory, long time) throws IOException {
+        final DirectoryIndex.DirectoryRecord previous = previousIndex == null ? null : previousIndex.getUnchangedDirectory(prefix, time);
+        final Listing listing;
+        if (previous == null) {
+            final Path[] children = listSorted(directory);
+            listing = new Listing(children.length);
+            for (int i = 0; i < children.length; i++) {
+                listing.paths[i] = children[i];
+                listing.entries[i] = createEntry(prefix, children[i], Files.readAttributes(children[i], BasicFileAttributes.class));
+            }
+        } else {
+            listing = new Listing(previous.names.length);
+            for (int i = 0; i < previous.names.length; i++) {
+                final Path child = directory.resolve(previous.names[i]);
+                listing.paths[i] = child;
+                if (previous.directory[i] || previousIndex.isInspected(prefix + previous.names[i])) {
+                    listing.entries[i] = createEntry(prefix, child, Files.readAttributes(child, BasicFileAttributes.class));
+                } else {
+                    final EntryInfo entry = new EntryInfo();
+                    entry.setPath(prefix + previous.names[i]);
+                    listing.entries[i] = entry;
+                }
+            }
+        }
+        if (index != null) {
+            final String[] names = new String[listing.paths.length];
+            final boolean[] directories = new boolean[names.length];
+            for (int i = 0; i < names.length; i++) {
+                names[i] = listing.paths[i].getFileName().toString();
+                directories[i] = listing.entries[i].isDirectory();
+            }
+            index.directories.put(prefix, new DirectoryIndex.DirectoryRecord(time, names, directories));
+        }
+        return listing;
+    }
+
+    private static EntryInfo createEntry(String prefix, Path path, BasicFileAttributes attributes) {
+        final EntryInfo entry = new EntryInfo();
+        entry.setTime(attributes.lastModifiedTime().toMillis());
+        if (attributes.isDirectory()) {
+            entry.setPath(prefix + path.getFileName() + "/");
+            entry.setDirectory(true);
+        } else {
+            entry.setPath(prefix + path.getFileName());
+            entry.setSize(attributes.size());
+        }
+        return entry;
+    }
+
+    /**
+     * Walks the directory tree depth-first, listing each directory only when the cursor reaches it.
+     */
+    private class DirectoryCursor implements EntryCursor {
+        private final List<Level> stack = new ArrayList<Level>();
+
+        DirectoryCursor(Path baseDirectory, long baseTime) throws IOException {
+            stack.add(new Level(list("", baseDirectory, baseTime)));
+        }
+
+        public EntryInfo next() throws IOException {
+            while (!stack.isEmpty()) {
+                final Level level = stack.get(stack.size() - 1);
+                if (level.index == level.listing.entries.length) {
+                    stack.remove(stack.size() - 1);
+                    continue;
+                }
+                final int i = level.index++;
+                final EntryInfo entry = level.listing.entries[i];
+                if (entry.isDirectory()) {
+                    stack.add(new Level(list(entry.getPath(), level.listing.paths[i], entry.getTime())));
+                }
+                return entry;
+            }
+            return null;
         }
-        return entries;
     }
 
-    public InputStream getInputStream(File containerFile, String entry) throws IOException {
-        return new FileInputStream(new File(containerFile, entry));
+    private static class Level {
+        final Listing listing;
+        int index;
+
+        Level(Listing listing) {
+            this.listing = listing;
+        }
     }
 
+    private static class Listing {
+        final Path[] paths;
+        final EntryInfo[] entries;
+
+        Listing(int size) {
+            paths = new Path[size];
+            entries = new EntryInfo[size];
+        }
+    }
+
+    /**
+     * Lists one directory, with its subdirectories forked as separate tasks.
+     * Results are joined in the same order as produced by {@link DirectoryCursor}.
+     */
+    private class ListingTask extends RecursiveTask<List<EntryInfo>> {
+        private final String prefix;
+        private final Path directory;
+        private final long time;
+
+        ListingTask(String prefix, Path directory, long time) {
+            this.prefix = prefix;
+            this.directory = directory;
+            this.time = time;
+        }
+
+        @Override
+        protected List<EntryInfo> compute() {
+            try {
+                final Listing listing = list(prefix, directory, time);
+                final EntryInfo[] childEntries = listing.entries;
+                final ListingTask[] subtasks = new ListingTask[childEntries.length];
+                for (int i = 0; i < childEntries.length; i++) {
+                    if (childEntries[i].isDirectory()) {
+                        subtasks[i] = new ListingTask(childEntries[i].getPath(), listing.paths[i], childEntries[i].getTime());
+                        subtasks[i].fork();
+                    }
+                }
+                final List<EntryInfo> entries = new ArrayList<EntryInfo>(childEntries.length);
+                for (int i = 0; i < childEntries.length; i++) {
+                    entries.add(childEntries[i]);
+                    if (subtasks[i] != null) {
+                        entries.addAll(subtasks[i].join());
+                    }
+                }
+                return entries;
+            } catch (IOException e) {
+                throw new ListingException(e);
+            }
+        }
+    }
+
+    /**
+     * Carries {@link IOException} out of {@link ListingTask}.
+     */
+    private static class ListingException extends RuntimeException {
+        ListingException(IOException cause) {
+            super(cause);
+        }
+
+        @Override
+        public synchronized IOException getCause() {
+            return (IOException) super.getCause();
+        }
+    }
 }
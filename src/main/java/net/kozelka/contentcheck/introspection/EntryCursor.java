@@ -0,0 +1,15 @@
+package net.kozelka.contentcheck.introspection;
+
+import java.io.IOException;
+
+/**
+ * Forward-only cursor over entries of an {@link IntrospectionSession}.
+ * Entries are produced lazily, in the natural order of the container:
+ * the central directory order for ZIP archives, depth-first alphabetical order for directories.
+ */
+interface EntryCursor {
+    /**
+     * @return the next entry, or null when there are no more entries
+     */
+    EntryInfo next() throws IOException;
+}
@@ -0,0 +1,94 @@
+package net.kozelka.contentcheck.introspection;
+
+/**
+ * Describes one entry of the introspected container, with the metadata that the container provides for free.
+ * Values that are unknown for the given container kind are <code>-1</code>.
+ */
+public class EntryInfo {
+    private String path;
+    private boolean directory;
+    private long size = -1;
+    private long compressedSize = -1;
+    private long crc = -1;
+    private int method = -1;
+    private long time = -1;
+
+    /**
+     * @return relative path within the container; directories end with a slash
+     */
+    public String getPath() {
+        return path;
+    }
+
+    public void setPath(String path) {
+        this.path = path;
+    }
+
+    public boolean isDirectory() {
+        return directory;
+    }
+
+    public void setDirectory(boolean directory) {
+        this.directory = directory;
+    }
+
+    /**
+     * @return uncompressed size in bytes
+     */
+    public long getSize() {
+        return size;
+    }
+
+    public void setSize(long size) {
+        this.size = size;
+    }
+
+    /**
+     * @return compressed size in bytes; only known for archive entries
+     */
+    public long getCompressedSize() {
+        return compressedSize;
+    }
+
+    public void setCompressedSize(long compressedSize) {
+        this.compressedSize = compressedSize;
+    }
+
+    /**
+     * @return CRC-32 of uncompressed data; only known for archive entries
+     */
+    public long getCrc() {
+        return crc;
+    }
+
+    public void setCrc(long crc) {
+        this.crc = crc;
+    }
+
+    /**
+     * @return compression method, as in {@link java.util.zip.ZipEntry#getMethod()}; only known for archive entries
+     */
+    public int getMethod() {
+        return method;
+    }
+
+    public void setMethod(int method) {
+        this.method = method;
+    }
+
+    /**
+     * @return modification time in milliseconds since the epoch
+     */
+    public long getTime() {
+        return time;
+    }
+
+    public void setTime(long time) {
+        this.time = time;
+    }
+
+    @Override
+    public String toString() {
+        return path;
+    }
+}
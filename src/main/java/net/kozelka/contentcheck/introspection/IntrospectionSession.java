@@ -0,0 +1,33 @@
+package net.kozelka.contentcheck.introspection;
+
+import java.io.IOException;
+import java.io.InputStream;
+
+/**
+ * Represents one container {@link IntrospectorInputStrategy#open(java.io.File) opened} for introspection.
+ * Keeps the underlying resources (like the parsed ZIP central directory) between individual operations,
+ * so that they are not re-created per entry.
+ * The session must be {@link #close() closed} when no longer needed.
+ */
+interface IntrospectionSession {
+    /**
+     * Starts a new pass over all entries in the container.
+     * Entries are read lazily, so that the first one is available immediately, regardless of the container size.
+     * @return cursor over the entries, in their natural order
+     */
+    EntryCursor entries() throws IOException;
+
+    /**
+     * Returns specified entry as an {@link java.io.InputStream inputstream}.
+     * Can be called from multiple threads concurrently.
+     *
+     * @param entryPath entry path within the container
+     * @return entry data as input stream; caller is responsible for closing it
+     */
+    InputStream getInputStream(String entryPath) throws IOException;
+
+    /**
+     * Releases all resources held by this session.
+     */
+    void close() throws IOException;
+}
@@ -15,8 +15,9 @@ import java.util.Set;
  */
 interface IntrospectorInputStrategy {
     /**
-     * Lists all file entries in specified container.
+     * Lists all file entries in specified container, in their natural order.
      * Entries should be represented by theirs paths.
+     * Prefer {@link IntrospectionSession#entries()} to avoid holding all entries in memory.
      * <p>
      *     Example: <br />
      *     For container file /user/home/myTestDir:
@@ -28,7 +29,7 @@ interface IntrospectorInputStrategy {
      *     </pre>
      *     The following list should be returned:
      *     <pre>
-     *         [dir1, dir1/dir1file1, dir1/dir1file2, file1]
+     *         [dir1/, dir1/dir1file1, dir1/dir1file2, file1]
      *     </pre>
      *
      * </p>
@@ -49,4 +50,12 @@ interface IntrospectorInputStrategy {
      * @return entry data as input stream
      */
     InputStream getInputStream(File containerFile, String entryPath) throws IOException;
+
+    /**
+     * Opens specified container for a sequence of operations, sharing resources between them.
+     *
+     * @param containerFile directory or ZIP archive
+     * @return the session; caller is responsible for {@link IntrospectionSession#close() closing} it
+     */
+    IntrospectionSession open(File containerFile) throws IOException;
 }
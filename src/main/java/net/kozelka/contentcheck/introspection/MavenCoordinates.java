@@ -0,0 +1,76 @@
+package net.kozelka.contentcheck.introspection;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Properties;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipInputStream;
+
+/**
+ * Maven coordinates of an archive, as recorded by Maven in <code>META-INF/maven/&lt;groupId&gt;/&lt;artifactId&gt;/pom.properties</code>.
+ */
+public class MavenCoordinates {
+    private static final String POM_PROPERTIES_PREFIX = "META-INF/maven/";
+    private static final String POM_PROPERTIES_NAME = "/pom.properties";
+
+    private final String groupId;
+    private final String artifactId;
+    private final String version;
+
+    public MavenCoordinates(String groupId, String artifactId, String version) {
+        this.groupId = groupId;
+        this.artifactId = artifactId;
+        this.version = version;
+    }
+
+    public String getGroupId() {
+        return groupId;
+    }
+
+    public String getArtifactId() {
+        return artifactId;
+    }
+
+    /**
+     * @return the version, or null if not recorded
+     */
+    public String getVersion() {
+        return version;
+    }
+
+    /**
+     * Reads coordinates from all <code>pom.properties</code> files in given archive stream.
+     * Most archives have exactly one; archives repackaging their dependencies (like shaded jars) can have more.
+     * @param archiveStream the archive; it is read to the end, but not closed
+     * @return found coordinates, in the order of archive entries; empty when the stream is not an archive
+     */
+    public static List<MavenCoordinates> readAll(InputStream archiveStream) throws IOException {
+        final List<MavenCoordinates> result = new ArrayList<MavenCoordinates>();
+        final ZipInputStream zis = new ZipInputStream(archiveStream);
+        ZipEntry entry;
+        while ((entry = zis.getNextEntry()) != null) {
+            final String name = entry.getName();
+            if (!name.startsWith(POM_PROPERTIES_PREFIX) || !name.endsWith(POM_PROPERTIES_NAME)) continue;
+            // groupId and artifactId from the path serve as defaults
+            final String[] ga = name.substring(POM_PROPERTIES_PREFIX.length(), name.length() - POM_PROPERTIES_NAME.length()).split("/");
+            if (ga.length != 2) continue;
+            final Properties properties = new Properties();
+            properties.load(zis);
+            result.add(new MavenCoordinates(
+                properties.getProperty("groupId", ga[0]),
+                properties.getProperty("artifactId", ga[1]),
+                properties.getProperty("version")));
+        }
+        return result;
+    }
+
+    /**
+     * @return coordinates in form <code>groupId:artifactId:version</code>, or <code>groupId:artifactId</code> when version is unknown
+     */
+    @Override
+    public String toString() {
+        return version == null ? groupId + ":" + artifactId : groupId + ":" + artifactId + ":" + version;
+    }
+}
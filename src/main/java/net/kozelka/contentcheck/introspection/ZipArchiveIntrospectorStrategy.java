@@ -1,41 +1,88 @@
 package net.kozelka.contentcheck.introspection;
 
 import java.io.File;
-import java.io.FileInputStream;
+import java.io.FileNotFoundException;
 import java.io.IOException;
 import java.io.InputStream;
-import java.util.HashSet;
-import java.util.Set;
+import java.io.RandomAccessFile;
 import java.util.zip.ZipEntry;
 import java.util.zip.ZipFile;
-import java.util.zip.ZipInputStream;
 
 /**
  * Implementation of {@link IntrospectorInputStrategy} which can read the content of ZIP file.
  */
-class ZipArchiveIntrospectorStrategy implements IntrospectorInputStrategy {
-    public Set<String> list(File containerFile) throws IOException {
-        final ZipFile zipFile = new ZipFile(containerFile);
-        final ZipInputStream zis = new ZipInputStream(new FileInputStream(containerFile));
-        final Set<String> entries = new HashSet<String>();
-        try {
-            ZipEntry entry;
-            while ((entry = zis.getNextEntry()) != null) {
-                final String entryName = entry.getName();
-                entries.add(entryName);
+class ZipArchiveIntrospectorStrategy extends AbstractIntrospectorStrategy {
+
+    public IntrospectionSession open(File containerFile) throws IOException {
+        return new ZipSession(containerFile);
+    }
+
+    /**
+     * Lists entries by reading just the central directory, through a positional {@link java.nio.channels.FileChannel}.
+     * Keeps one {@link ZipFile} open for the rest of the session, so that it is parsed only once;
+     * it is not opened at all when no entry content is requested.
+     */
+    private static class ZipSession implements IntrospectionSession {
+        private final File containerFile;
+        private RandomAccessFile raf;
+        private ZipFile zipFile;
+
+        ZipSession(File containerFile) throws IOException {
+            if (!containerFile.isFile()) {
+                throw new FileNotFoundException(containerFile.getAbsolutePath());
             }
-        } finally {
-            try {
-                zis.close();
-            } finally {
-                zipFile.close();
+            this.containerFile = containerFile;
+        }
+
+        public EntryCursor entries() throws IOException {
+            if (raf == null) {
+                raf = new RandomAccessFile(containerFile, "r");
             }
+            final ZipCentralDirectoryReader reader = new ZipCentralDirectoryReader(raf.getChannel());
+            return new EntryCursor() {
+                public EntryInfo next() throws IOException {
+                    if (!reader.next()) return null;
+                    final EntryInfo entry = new EntryInfo();
+                    entry.setPath(reader.getName());
+                    entry.setDirectory(reader.isDirectory());
+                    entry.setSize(reader.getSize());
+                    entry.setCompressedSize(reader.getCompressedSize());
+                    entry.setCrc(reader.getCrc());
+                    entry.setMethod(reader.getMethod());
+                    entry.setTime(reader.getTime());
+                    return entry;
+                }
+            };
         }
 
-        return entries;
-    }
+        public InputStream getInputStream(String entryPath) throws IOException {
+            final ZipFile zip = getZipFile();
+            final ZipEntry entry = zip.getEntry(entryPath);
+            if (entry == null) {
+                throw new FileNotFoundException(String.format("Entry '%s' not found in %s", entryPath, containerFile));
+            }
+            return zip.getInputStream(entry);
+        }
+
+        private synchronized ZipFile getZipFile() throws IOException {
+            if (zipFile == null) {
+                zipFile = new ZipFile(containerFile);
+            }
+            return zipFile;
+        }
 
-    public InputStream getInputStream(File containerFile, String entry) throws IOException {
-        return new ZipFile(containerFile).getInputStream(new ZipEntry(entry));
+        public synchronized void close() throws IOException {
+            try {
+                if (zipFile != null) {
+                    zipFile.close();
+                    zipFile = null;
+                }
+            } finally {
+                if (raf != null) {
+                    raf.close();
+                    raf = null;
+                }
+            }
+        }
     }
 }
@@ -0,0 +1,313 @@
+package net.kozelka.contentcheck.introspection;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.channels.FileChannel;
+import java.util.Calendar;
+import java.util.zip.ZipException;
+
+/**
+ * Reads entry records from the central directory of a ZIP archive, using positional reads on a {@link FileChannel}.
+ * Only the end-of-central-directory records and the central directory itself are read; entry data are never touched,
+ * so listing even a huge archive costs just a few kilobytes of I/O.
+ * <p>
+ * Supports Zip64 archives, and archives embedded in another file at given offset
+ * (for instance, a STORED entry of an outer archive).
+ * </p>
+ * <p>
+ * Works as a forward-only cursor: call {@link #next()} to move to the next record, then read its fields with getters.
+ * The channel is not closed by this class.
+ * </p>
+ */
+public class ZipCentralDirectoryReader {
+    private static final int EOCD_SIG = 0x06054b50;
+    private static final int EOCD_SIZE = 22;
+    private static final int ZIP64_EOCD_LOCATOR_SIG = 0x07064b50;
+    private static final int ZIP64_EOCD_LOCATOR_SIZE = 20;
+    private static final int ZIP64_EOCD_SIG = 0x06064b50;
+    private static final int ZIP64_EOCD_SIZE = 56;
+    private static final int CEN_SIG = 0x02014b50;
+    private static final int CEN_SIZE = 46;
+    private static final int LOC_SIG = 0x04034b50;
+    private static final int LOC_SIZE = 30;
+    private static final int ZIP64_EXTRA_ID = 0x0001;
+    private static final long ZIP64_MAGIC = 0xFFFFFFFFL;
+    private static final int ZIP64_MAGIC_COUNT = 0xFFFF;
+    private static final int MAX_COMMENT_SIZE = 0xFFFF;
+    private static final int WINDOW_SIZE = 64 * 1024;
+
+    private final FileChannel channel;
+    private final long archiveOffset;
+    private final long archiveLength;
+    private long entryCount;
+    private long centralDirectoryStart;
+    private long centralDirectoryEnd;
+    /**
+     * Difference between the real and the declared position of the archive; non-zero for archives with a preamble.
+     */
+    private long shift;
+
+    private ByteBuffer window = ByteBuffer.allocate(0);
+    private long windowStart;
+    private long position;
+    private long remaining;
+
+    private String name;
+    private int flags;
+    private int method;
+    private long dosTime;
+    private long crc;
+    private long compressedSize;
+    private long size;
+    private long localHeaderOffset;
+
+    /**
+     * Reads archive occupying the whole file.
+     * @param channel the file channel
+     */
+    public ZipCentralDirectoryReader(FileChannel channel) throws IOException {
+        this(channel, 0, channel.size());
+    }
+
+    /**
+     * Reads archive embedded in a file at given offset.
+     * @param channel the file channel
+     * @param archiveOffset position of the first archive byte in the file
+     * @param archiveLength length of the archive, in bytes
+     */
+    public ZipCentralDirectoryReader(FileChannel channel, long archiveOffset, long archiveLength) throws IOException {
+        this.channel = channel;
+        this.archiveOffset = archiveOffset;
+        this.archiveLength = archiveLength;
+        locateCentralDirectory();
+        position = centralDirectoryStart;
+        remaining = entryCount;
+    }
+
+    private void locateCentralDirectory() throws IOException {
+        if (archiveLength < EOCD_SIZE) {
+            throw new ZipException("Not a ZIP archive: too short");
+        }
+        final int tailSize = (int) Math.min(archiveLength, EOCD_SIZE + MAX_COMMENT_SIZE);
+        final long tailStart = archiveOffset + archiveLength - tailSize;
+        final ByteBuffer tail = readFully(tailStart, tailSize);
+        int eocd = -1;
+        for (int i = tailSize - EOCD_SIZE; i >= 0; i--) {
+            if (tail.getInt(i) == EOCD_SIG) {
+                eocd = i;
+                break;
+            }
+        }
+        if (eocd < 0) {
+            throw new ZipException("Not a ZIP archive: end of central directory not found");
+        }
+        final long eocdPosition = tailStart + eocd;
+        entryCount = u16(tail, eocd + 10);
+        long cdSize = u32(tail, eocd + 12);
+        long cdOffset = u32(tail, eocd + 16);
+        long cdEnd = eocdPosition;
+        if (entryCount == ZIP64_MAGIC_COUNT || cdSize == ZIP64_MAGIC || cdOffset == ZIP64_MAGIC) {
+            final long locatorPosition = eocdPosition - ZIP64_EOCD_LOCATOR_SIZE;
+            if (locatorPosition >= archiveOffset) {
+                final ByteBuffer locator = readFully(locatorPosition, ZIP64_EOCD_LOCATOR_SIZE);
+                if (locator.getInt(0) == ZIP64_EOCD_LOCATOR_SIG) {
+                    // the record right precedes the locator, unless it has extensible data; its declared position ignores any preamble
+                    long zip64EocdPosition = locatorPosition - ZIP64_EOCD_SIZE;
+                    ByteBuffer zip64Eocd = zip64EocdPosition >= archiveOffset ? readFully(zip64EocdPosition, ZIP64_EOCD_SIZE) : null;
+                    if (zip64Eocd == null || zip64Eocd.getInt(0) != ZIP64_EOCD_SIG) {
+                        zip64EocdPosition = archiveOffset + locator.getLong(8);
+                        zip64Eocd = readFully(zip64EocdPosition, ZIP64_EOCD_SIZE);
+                    }
+                    if (zip64Eocd.getInt(0) != ZIP64_EOCD_SIG) {
+                        throw new ZipException("Invalid Zip64 end of central directory record");
+                    }
+                    entryCount = zip64Eocd.getLong(32);
+                    cdSize = zip64Eocd.getLong(40);
+                    cdOffset = zip64Eocd.getLong(48);
+                    cdEnd = zip64EocdPosition;
+                }
+            }
+        }
+        centralDirectoryStart = cdEnd - cdSize;
+        centralDirectoryEnd = cdEnd;
+        if (centralDirectoryStart < archiveOffset) {
+            throw new ZipException("Invalid central directory size: " + cdSize);
+        }
+        shift = centralDirectoryStart - (archiveOffset + cdOffset);
+    }
+
+    /**
+     * @return number of entries declared by the central directory
+     */
+    public long getEntryCount() {
+        return entryCount;
+    }
+
+    /**
+     * Moves to the next central directory record.
+     * @return false when there are no more records
+     */
+    public boolean next() throws IOException {
+        if (remaining == 0) {
+            name = null;
+            return false;
+        }
+        ensureWindow(position, CEN_SIZE);
+        final int p = (int) (position - windowStart);
+        if (window.getInt(p) != CEN_SIG) {
+            throw new ZipException("Invalid central directory record at position " + position);
+        }
+        flags = u16(window, p + 8);
+        method = u16(window, p + 10);
+        dosTime = u32(window, p + 12);
+        crc = u32(window, p + 16);
+        compressedSize = u32(window, p + 20);
+        size = u32(window, p + 24);
+        final int nameLength = u16(window, p + 28);
+        final int extraLength = u16(window, p + 30);
+        final int commentLength = u16(window, p + 32);
+        localHeaderOffset = u32(window, p + 42);
+        final int recordSize = CEN_SIZE + nameLength + extraLength + commentLength;
+        ensureWindow(position, recordSize);
+        final int q = (int) (position - windowStart);
+        name = new String(window.array(), window.arrayOffset() + q + CEN_SIZE, nameLength, "UTF-8");
+        if (size == ZIP64_MAGIC || compressedSize == ZIP64_MAGIC || localHeaderOffset == ZIP64_MAGIC) {
+            readZip64Extra(q + CEN_SIZE + nameLength, extraLength);
+        }
+        position += recordSize;
+        remaining--;
+        return true;
+    }
+
+    private void readZip64Extra(int start, int length) {
+        int p = start;
+        final int end = start + length;
+        while (p + 4 <= end) {
+            final int id = u16(window, p);
+            final int dataSize = u16(window, p + 2);
+            if (id == ZIP64_EXTRA_ID) {
+                int q = p + 4;
+                if (size == ZIP64_MAGIC) {
+                    size = window.getLong(q);
+                    q += 8;
+                }
+                if (compressedSize == ZIP64_MAGIC) {
+                    compressedSize = window.getLong(q);
+                    q += 8;
+                }
+                if (localHeaderOffset == ZIP64_MAGIC) {
+                    localHeaderOffset = window.getLong(q);
+                }
+                return;
+            }
+            p += 4 + dataSize;
+        }
+    }
+
+    /**
+     * @return path of the current entry
+     */
+    public String getName() {
+        return name;
+    }
+
+    public boolean isDirectory() {
+        return name.endsWith("/");
+    }
+
+    /**
+     * @return compression method of the current entry, as in {@link java.util.zip.ZipEntry#getMethod()}
+     */
+    public int getMethod() {
+        return method;
+    }
+
+    public long getCrc() {
+        return crc;
+    }
+
+    public long getCompressedSize() {
+        return compressedSize;
+    }
+
+    public long getSize() {
+        return size;
+    }
+
+    /**
+     * @return general purpose bit flags of the current entry
+     */
+    public int getFlags() {
+        return flags;
+    }
+
+    /**
+     * @return modification time of the current entry, in milliseconds since the epoch
+     */
+    public long getTime() {
+        final Calendar calendar = Calendar.getInstance();
+        calendar.clear();
+        calendar.set((int) ((dosTime >> 25) & 0x7f) + 1980,
+            (int) ((dosTime >> 21) & 0x0f) - 1,
+            (int) ((dosTime >> 16) & 0x1f),
+            (int) ((dosTime >> 11) & 0x1f),
+            (int) ((dosTime >> 5) & 0x3f),
+            (int) ((dosTime << 1) & 0x3e));
+        return calendar.getTimeInMillis();
+    }
+
+    /**
+     * @return position of the current entry's local header within the file (not within the archive)
+     */
+    public long getLocalHeaderOffset() {
+        return archiveOffset + shift + localHeaderOffset;
+    }
+
+    /**
+     * Reads the local header of current entry to find where its data start.
+     * This is the only method reading outside the central directory.
+     * @return position of the current entry's data within the file
+     */
+    public long getDataOffset() throws IOException {
+        final long headerPosition = getLocalHeaderOffset();
+        final ByteBuffer header = readFully(headerPosition, LOC_SIZE);
+        if (header.getInt(0) != LOC_SIG) {
+            throw new ZipException(String.format("Invalid local header for entry '%s' at position %d", name, headerPosition));
+        }
+        return headerPosition + LOC_SIZE + u16(header, 26) + u16(header, 28);
+    }
+
+    private void ensureWindow(long start, int length) throws IOException {
+        if (start >= windowStart && start + length <= windowStart + window.limit()) return;
+        if (start + length > centralDirectoryEnd) {
+            throw new ZipException("Central directory record exceeds the central directory at position " + start);
+        }
+        final int windowSize = (int) Math.min(Math.max(WINDOW_SIZE, length), centralDirectoryEnd - start);
+        window = readFully(start, windowSize);
+        windowStart = start;
+    }
+
+    private ByteBuffer readFully(long start, int length) throws IOException {
+        final ByteBuffer buffer = ByteBuffer.allocate(length);
+        buffer.order(ByteOrder.LITTLE_ENDIAN);
+        long pos = start;
+        while (buffer.hasRemaining()) {
+            final int cnt = channel.read(buffer, pos);
+            if (cnt < 0) {
+                throw new ZipException("Unexpected end of file at position " + pos);
+            }
+            pos += cnt;
+        }
+        buffer.flip();
+        return buffer;
+    }
+
+    private static int u16(ByteBuffer buffer, int index) {
+        return buffer.getShort(index) & 0xFFFF;
+    }
+
+    private static long u32(ByteBuffer buffer, int index) {
+        return buffer.getInt(index) & ZIP64_MAGIC;
+    }
+}
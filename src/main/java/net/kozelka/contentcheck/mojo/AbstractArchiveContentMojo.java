@@ -55,6 +55,22 @@ public abstract class AbstractArchiveContentMojo extends AbstractMojo {
     @Parameter(defaultValue = "**/*.jar")
     String checkFilesPattern;
 
+    /**
+     * How many threads inspect the content of archive entries (like when {@link #ignoreVendorArchives} is on),
+     * how many threads list the source when it is a directory,
+     * and how many threads match very large sources against approved content.
+     * The results and the order of reported entries do not depend on this value.
+     */
+    @Parameter(defaultValue = "1", property = "contentcheck.introspectionThreads")
+    int introspectionThreads;
+
+    /**
+     * If true, archives nested in the source (EAR, WAR and ZIP files) are checked too, at any depth.
+     * Their entries are reported with virtual paths like <code>web.war!/WEB-INF/lib/x.jar</code>.
+     */
+    @Parameter(defaultValue = "false", property = "contentcheck.recursive")
+    boolean recursive;
+
     protected void assertSourceFileExists() throws MojoExecutionException {
         if (sourceFile == null) {
             sourceFile = directory;
@@ -1,9 +1,14 @@
 package net.kozelka.contentcheck.mojo;
 
 import java.io.File;
+import java.io.FileNotFoundException;
 import java.io.IOException;
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.Collection;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
 import java.util.Set;
 import net.kozelka.contentcheck.expect.api.ApproverReport;
 import net.kozelka.contentcheck.expect.impl.ContentChecker;
@@ -47,6 +52,20 @@ public class ContentCheckMojo extends AbstractArchiveContentMojo {
     @Parameter(defaultValue = "${project.build.directory}/contentcheck-maven-plugin/approved-content.txt")
     File contentListingGenerated;
 
+    /**
+     * Where to keep {@link #contentListing} compiled for matching, so that subsequent runs do not parse an unchanged listing again;
+     * and an index of the content of each source that is a directory,
+     * so that subsequent runs only list changed directories and only read changed files.
+     */
+    @Parameter(defaultValue = "${project.build.directory}/contentcheck-maven-plugin", property = "contentcheck.listingCacheDirectory")
+    File listingCacheDirectory;
+
+    /**
+     * Whether to use the index of directory sources in {@link #listingCacheDirectory}. Set to <code>false</code> to always walk the whole source.
+     */
+    @Parameter(defaultValue = "true", property = "contentcheck.useListingCache")
+    boolean useListingCache;
+
     /**
      * Message used to report missing entry - uses the {@link java.util.Formatter} syntax to embed entry name.
      */
@@ -71,6 +90,20 @@ public class ContentCheckMojo extends AbstractArchiveContentMojo {
     @Parameter(defaultValue = "true")
     boolean failOnUnexpected;
 
+    /**
+     * Sources to check against the same {@link #contentListing} in one execution, instead of {@link #sourceFile}.
+     * Each item is a file or directory, or an Ant-like pattern like <code>target/dist/*.zip</code>; relative ones are resolved against the project directory.
+     * The listing is compiled once, sources are checked by {@link #introspectionThreads} threads,
+     * and problems of all sources are reported together before the build fails.
+     * A path that does not exist fails the build; a pattern that matches nothing is only reported.
+     * No listing is generated into {@link #contentListingGenerated} in this mode.
+     */
+    @Parameter(property = "contentcheck.sourceFiles")
+    String[] sourceFiles;
+
+    @Parameter(defaultValue = "${basedir}", readonly = true)
+    File basedir;
+
     public void execute() throws MojoExecutionException, MojoFailureException {
 
         if (skip) {
@@ -78,12 +111,20 @@ public class ContentCheckMojo extends AbstractArchiveContentMojo {
             return;
         }
 
+        if (sourceFiles != null && sourceFiles.length > 0) {
+            checkSourceFiles();
+            return;
+        }
+
         assertSourceFileExists();
 
         try {
             final ContentIntrospector introspector = VendorFilter.createIntrospector(new MyIntrospectionListener(getLog()),
                 ignoreVendorArchives, vendorId, manifestVendorEntry, checkFilesPattern);
             introspector.setSourceFile(sourceFile);
+            introspector.setParallelism(introspectionThreads);
+            introspector.setRecursive(recursive);
+            setIndexFile(introspector, sourceFile);
             //
             if (contentListing.exists()) {
                 checkExpectedContent(introspector);
@@ -100,42 +141,129 @@ public class ContentCheckMojo extends AbstractArchiveContentMojo {
         }
     }
 
+    private void setIndexFile(ContentIntrospector introspector, File source) {
+        if (!useListingCache || listingCacheDirectory == null || !source.isDirectory()) return;
+        final File indexFile = new File(listingCacheDirectory, String.format("%s-%08x.idx", source.getName(), source.getAbsolutePath().hashCode()));
+        introspector.setIndexFile(indexFile, String.format("%s|%s|%s|%s", checkFilesPattern, ignoreVendorArchives, vendorId, manifestVendorEntry));
+    }
+
     private void checkExpectedContent(ContentIntrospector introspector) throws IOException, MojoFailureException {
         final ContentChecker contentChecker = new ContentChecker();
         contentChecker.getEvents().addListener(new MyContentCheckerListener(getLog()));
         contentChecker.setIntrospector(introspector);
+        contentChecker.setParallelism(introspectionThreads);
+        contentChecker.setCacheDirectory(listingCacheDirectory);
 
         getLog().info("Reading listing: " + contentListing);
         final ApproverReport report = contentChecker.check(contentListing);
         generate(report.getActualEntries());
 
+        final Problems problems = report(report, "");
+        // fail as necessary, after reporting all detected problems
+        if (failOnMissing && problems.missing > 0) {
+            throw new MojoFailureException(problems.missing + " expected entries are missing in " + sourceFile);
+        }
+
+        if (failOnUnexpected && problems.unexpected > 0) {
+            throw new MojoFailureException(problems.unexpected + " unexpected entries appear in " + sourceFile);
+        }
+
+        getLog().info("Source " + sourceFile.getAbsolutePath() + " has valid content according to " + contentListing.getAbsolutePath());
+    }
+
+    private void checkSourceFiles() throws MojoExecutionException, MojoFailureException {
+        if (!contentListing.exists()) {
+            throw new MojoExecutionException(String.format("File '%s' does not exist. Check a single source to generate its initial version.", contentListing));
+        }
+        final Set<File> sources = new LinkedHashSet<File>();
+        for (String item : sourceFiles) {
+            if (item.trim().length() == 0) continue;
+            final List<File> matches;
+            try {
+                matches = ExpectUtils.resolveSourceFiles(basedir, item);
+            } catch (FileNotFoundException e) {
+                throw new MojoExecutionException("Source file " + e.getMessage() + " does not exist.", e);
+            }
+            if (matches.isEmpty()) {
+                getLog().warn("No source matches " + item);
+            }
+            sources.addAll(matches);
+        }
+        if (sources.isEmpty()) {
+            throw new MojoExecutionException("No source matches " + Arrays.toString(sourceFiles));
+        }
+        try {
+            final List<ContentIntrospector> introspectors = new ArrayList<ContentIntrospector>(sources.size());
+            for (File source : sources) {
+                final ContentIntrospector introspector = VendorFilter.createIntrospector(new MyIntrospectionListener(getLog()),
+                    ignoreVendorArchives, vendorId, manifestVendorEntry, checkFilesPattern);
+                introspector.setSourceFile(source);
+                introspector.setRecursive(recursive);
+                setIndexFile(introspector, source);
+                introspectors.add(introspector);
+            }
+            final ContentChecker contentChecker = new ContentChecker();
+            contentChecker.getEvents().addListener(new MyContentCheckerListener(getLog()));
+            contentChecker.setParallelism(introspectionThreads);
+            contentChecker.setCacheDirectory(listingCacheDirectory);
+
+            getLog().info(String.format("Reading listing: %s, checking %d sources", contentListing, sources.size()));
+            final Map<File, ApproverReport> reports = contentChecker.checkAll(contentListing, introspectors);
+            int missing = 0;
+            int unexpected = 0;
+            int failedSources = 0;
+            for (Map.Entry<File, ApproverReport> entry : reports.entrySet()) {
+                final Problems problems = report(entry.getValue(), entry.getKey().getName() + ": ");
+                missing += problems.missing;
+                unexpected += problems.unexpected;
+                if ((failOnMissing && problems.missing > 0) || (failOnUnexpected && problems.unexpected > 0)) {
+                    failedSources++;
+                }
+            }
+            if (failedSources > 0) {
+                throw new MojoFailureException(String.format("%d of %d sources have invalid content: %d expected entries are missing, %d unexpected entries appear",
+                    failedSources, sources.size(), missing, unexpected));
+            }
+            getLog().info(String.format("All %d sources have valid content according to %s", sources.size(), contentListing.getAbsolutePath()));
+        } catch (IOException e) {
+            throw new MojoFailureException(e.getMessage(), e);
+        }
+    }
+
+    /**
+     * Logs all problems found in one source.
+     * @param prefix prepended to each message, identifies the source when checking more of them
+     */
+    private Problems report(ApproverReport report, String prefix) {
         // report missing entries
         final Set<ApprovedEntry> missingEntries = report.getMissingEntries();
         for (ApprovedEntry missing : missingEntries) {
-            log(failOnMissing, String.format(msgMissing, missing));
+            log(failOnMissing, prefix + String.format(msgMissing, missing));
         }
         // report unexpected entries
         final Set<ActualEntry> unexpectedEntries = report.getUnexpectedEntries();
         for (ActualEntry actualEntry : unexpectedEntries) {
-            log(failOnUnexpected, String.format(msgUnexpected, actualEntry.getUri()));
+            log(failOnUnexpected, prefix + String.format(msgUnexpected, actualEntry.getUri()));
+        }
+        // report overlapping rules; these do not fail the build but make the listing harder to maintain
+        final Map<ActualEntry, List<ApprovedEntry>> multiplyMatched = report.getMultiplyMatchedEntries();
+        for (Map.Entry<ActualEntry, List<ApprovedEntry>> entry : multiplyMatched.entrySet()) {
+            getLog().debug(String.format("%sFile %s is approved by %d entries: %s", prefix, entry.getKey().getUri(), entry.getValue().size(), entry.getValue()));
+        }
+        if (!multiplyMatched.isEmpty()) {
+            getLog().info(String.format("%s%d files are approved by more than one entry", prefix, multiplyMatched.size()));
+        }
+        for (ApprovedEntry dead : report.getDeadRules()) {
+            getLog().info(String.format("%sApproved entry %s only matches files approved by other entries too", prefix, dead));
         }
         // error summary
         if (missingEntries.size() > 0) {
-            log(failOnMissing, "Missing: " + missingEntries.size() + " entries");
+            log(failOnMissing, prefix + "Missing: " + missingEntries.size() + " entries");
         }
         if (unexpectedEntries.size() > 0) {
-            log(failOnUnexpected, "Unexpected: " + unexpectedEntries.size() + " entries");
-        }
-        // fail as necessary, after reporting all detected problems
-        if (failOnMissing && ! missingEntries.isEmpty()) {
-            throw new MojoFailureException(missingEntries.size() + " expected entries are missing in " + sourceFile);
-        }
-
-        if (failOnUnexpected && ! unexpectedEntries.isEmpty()) {
-            throw new MojoFailureException(unexpectedEntries.size() + " unexpected entries appear in " + sourceFile);
+            log(failOnUnexpected, prefix + "Unexpected: " + unexpectedEntries.size() + " entries");
         }
-
-        getLog().info("Source " + sourceFile.getAbsolutePath() + " has valid content according to " + contentListing.getAbsolutePath());
+        return new Problems(missingEntries.size(), unexpectedEntries.size());
     }
 
     private void generate(Collection<ActualEntry> actualEntries) throws IOException {
@@ -152,4 +280,14 @@ public class ContentCheckMojo extends AbstractArchiveContentMojo {
             getLog().warn(message);
         }
     }
+
+    private static class Problems {
+        final int missing;
+        final int unexpected;
+
+        Problems(int missing, int unexpected) {
+            this.missing = missing;
+            this.unexpected = unexpected;
+        }
+    }
 }
@@ -2,13 +2,10 @@ package net.kozelka.contentcheck.mojo;
 
 import java.io.File;
 import java.io.IOException;
-import java.util.ArrayList;
-import java.util.List;
-import net.kozelka.contentcheck.expect.impl.ContentCollector;
 import net.kozelka.contentcheck.expect.impl.VendorFilter;
-import net.kozelka.contentcheck.expect.model.ActualEntry;
-import net.kozelka.contentcheck.expect.util.ExpectUtils;
+import net.kozelka.contentcheck.expect.util.ListingWriter;
 import net.kozelka.contentcheck.introspection.ContentIntrospector;
+import net.kozelka.contentcheck.introspection.MavenCoordinates;
 import org.apache.maven.plugin.MojoExecutionException;
 import org.apache.maven.plugin.MojoFailureException;
 import org.apache.maven.plugins.annotations.Mojo;
@@ -40,6 +37,12 @@ public class ContentListingGeneratorMojo extends AbstractArchiveContentMojo {
     @Parameter(defaultValue = "false", property = "overwriteExistingListing")
     boolean overwriteExistingListing;
 
+    /**
+     * How many entries are sorted in memory; larger sources are sorted with help of temporary files in <code>java.io.tmpdir</code>.
+     */
+    @Parameter(defaultValue = "100000", property = "contentcheck.maxEntriesInMemory")
+    int maxEntriesInMemory;
+
     public void execute() throws MojoExecutionException, MojoFailureException {
         if(!overwriteExistingListing && contentListing.exists()) {
             //TODO: use alternate output file (like target/contentcheck-maven-plugin/approved-content.txt) and fail after finishing the generation (issue #15)
@@ -50,27 +53,80 @@ public class ContentListingGeneratorMojo extends AbstractArchiveContentMojo {
             if (ignoreVendorArchives) {
                 getLog().warn(String.format("Archives of vendor '%s', indicated by manifest entry '%s', will not be added to the list", vendorId, manifestVendorEntry));
             }
-            final List<ActualEntry> sourceEntries = scanActualEntries();
-            getLog().info(String.format("Generated %d entries.", sourceEntries.size()));
-//            getLog().info(String.format("The source contains %d entries, but only %d matches the plugin configuration criteria.", count, sourceEntries.size()));
+            final ListingWriter writer = new ListingWriter(contentListing);
+            writer.setMaxEntriesInMemory(maxEntriesInMemory);
+            try {
+                scanActualEntries(writer);
+                getLog().info(String.format("Generated %d entries.", writer.getCount()));
+//                getLog().info(String.format("The source contains %d entries, but only %d matches the plugin configuration criteria.", count, sourceEntries.size()));
 
-            ExpectUtils.generateListing(sourceEntries, contentListing);
-            getLog().info(String.format("The listing file '%s' has been successfully generated.", contentListing));
+                writer.close();
+            } finally {
+                writer.discard();
+            }
+            if (writer.isChanged()) {
+                getLog().info(String.format("The listing file '%s' has been successfully generated.", contentListing));
+            } else {
+                getLog().info(String.format("The listing file '%s' is up to date.", contentListing));
+            }
         } catch (IOException e) {
             throw new MojoFailureException(e.getMessage(), e);
         }
     }
 
     // TODO: following methods should be moved to/unified with ContentChecker class
-    private List<ActualEntry> scanActualEntries() throws IOException {
+    private void scanActualEntries(final ListingWriter writer) throws IOException {
         final ContentIntrospector introspector = VendorFilter.createIntrospector(new MyIntrospectionListener(getLog()),
             ignoreVendorArchives, vendorId, manifestVendorEntry, checkFilesPattern);
         introspector.setSourceFile(sourceFile);
-        final List<ActualEntry> actualEntries = new ArrayList<ActualEntry>();
-        final ContentIntrospector.Events collector = new ContentCollector(actualEntries);
+        introspector.setParallelism(introspectionThreads);
+        introspector.setRecursive(recursive);
+        // entries go straight to the writer, so that large sources are not held in memory
+        final ListingCollector collector = new ListingCollector(writer);
         introspector.getEvents().addListener(collector);
         introspector.walk();
-        return actualEntries;
+        if (collector.failure != null) {
+            throw collector.failure;
+        }
+    }
+
+    /**
+     * Passes processed entries to the listing writer; the first failure stops writing, and is rethrown after the walk.
+     */
+    private static class ListingCollector implements ContentIntrospector.Events {
+        private final ListingWriter writer;
+        IOException failure;
+
+        ListingCollector(ListingWriter writer) {
+            this.writer = writer;
+        }
+
+        public void readingSourceFile(File sourceFile) {
+        }
+
+        public void skippingEntryNotMatching(String entry) {
+        }
+
+        public void skippingEntryOwnModule(String entry) {
+        }
+
+        public void cannotCheckManifest(String jarPath, Exception e) {
+        }
+
+        public void cannotWriteIndex(File indexFile, IOException e) {
+        }
+
+        public void foundCoordinates(String entryName, MavenCoordinates coordinates) {
+        }
+
+        public void processEntry(String entryName) {
+            if (failure != null) return;
+            try {
+                writer.add(entryName);
+            } catch (IOException e) {
+                failure = e;
+            }
+        }
     }
 
 }
@@ -4,6 +4,8 @@ import java.io.File;
 import java.io.FileNotFoundException;
 import java.io.IOException;
 import java.io.InputStream;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
 import java.util.ArrayList;
 import java.util.List;
 import java.util.Properties;
@@ -17,6 +19,7 @@ import net.kozelka.contentcheck.expect.impl.VendorFilter;
 import net.kozelka.contentcheck.expect.model.ActualEntry;
 import net.kozelka.contentcheck.expect.util.ExpectUtils;
 import net.kozelka.contentcheck.introspection.ContentIntrospector;
+import net.kozelka.contentcheck.util.UpdatingFileOutputStream;
 import org.apache.maven.model.Build;
 import org.apache.maven.plugin.AbstractMojo;
 import org.apache.maven.plugin.MojoExecutionException;
@@ -24,7 +27,6 @@ import org.apache.maven.plugin.MojoFailureException;
 import org.apache.maven.plugins.annotations.Mojo;
 import org.apache.maven.plugins.annotations.Parameter;
 import org.apache.maven.project.MavenProject;
-import org.codehaus.plexus.util.FileUtils;
 import org.codehaus.plexus.util.IOUtil;
 import org.codehaus.plexus.util.cli.StreamConsumer;
 
@@ -93,7 +95,14 @@ public class InitMojo extends AbstractMojo {
             String fragment = template.replace("@overlap.count@", report.getTotalOverlaps() + "");
             fragment = fragment.replace("@project.version@", version); //TODO - find and use real version here!
             final File fragmentFile = new File(outputDirectory, "fragment-pom.xml");
-            FileUtils.fileWrite(fragmentFile, fragment);
+            final UpdatingFileOutputStream fragmentStream = new UpdatingFileOutputStream(fragmentFile);
+            try {
+                final Writer writer = new OutputStreamWriter(fragmentStream);
+                writer.write(fragment);
+                writer.close();
+            } finally {
+                fragmentStream.discard();
+            }
         } catch (IOException e) {
             throw new MojoFailureException(e.getMessage(), e);
         }
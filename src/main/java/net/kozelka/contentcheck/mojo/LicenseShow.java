@@ -1,13 +1,16 @@
 package net.kozelka.contentcheck.mojo;
 
+import java.io.BufferedWriter;
 import java.io.File;
-import java.io.FileWriter;
 import java.io.IOException;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
 import java.util.Collections;
 import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
 import java.util.Set;
+import net.kozelka.contentcheck.util.UpdatingFileOutputStream;
 import org.apache.maven.model.License;
 import org.codehaus.jackson.map.ObjectMapper;
 import org.codehaus.plexus.util.FileUtils;
@@ -49,8 +52,9 @@ public class LicenseShow {
 
         public void output(final Map<String, List<License>> licensesPerFile) throws IOException {
             final Set<String> keySet = licensesPerFile.keySet();
-            final FileWriter csvWriter = new FileWriter(outputFile);
+            final UpdatingFileOutputStream file = new UpdatingFileOutputStream(outputFile);
             try {
+                final Writer csvWriter = new BufferedWriter(new OutputStreamWriter(file));
                 for (String entry : keySet) {
                     final List<License> licenses = licensesPerFile.get(entry);
                     final String jarName = FileUtils.filename(entry);
@@ -61,12 +65,13 @@ public class LicenseShow {
                         writeRecord(csvWriter, jarName, "unknown", "");
                     }
                 }
-            } finally {
                 csvWriter.close();
+            } finally {
+                file.discard();
             }
         }
 
-        private void writeRecord(FileWriter csvWriter, String jarName, String licenseName, String licenseUrl) throws IOException {
+        private void writeRecord(Writer csvWriter, String jarName, String licenseName, String licenseUrl) throws IOException {
             csvWriter.write(String.format("%s,%s,%s%n", jarName, safeString(licenseName), safeString(licenseUrl)));
         }
 
@@ -3,6 +3,7 @@ package net.kozelka.contentcheck.mojo;
 import net.kozelka.contentcheck.expect.impl.ContentChecker;
 import org.apache.maven.plugin.logging.Log;
 import java.io.File;
+import java.io.IOException;
 
 /**
  * @author Petr Kozelka
@@ -19,11 +20,15 @@ public class MyContentCheckerListener implements ContentChecker.Events {
 
     }
 
-    public void duplicate(File listingFile, String line) {
-        log.warn("The listing file " + listingFile + "  defines duplicate entry " + line);
+    public void duplicate(File listingFile, String line, int lineNumber, int firstLineNumber) {
+        log.warn(String.format("The listing file %s defines duplicate entry %s on line %d, first defined on line %d", listingFile, line, lineNumber, firstLineNumber));
     }
 
     public void contentListingSummary(File approvedContentFile, int definedEntryCount) {
         log.info(String.format("Content listing file '%s' defines %d approved entries", approvedContentFile, definedEntryCount));
     }
+
+    public void cannotWriteCache(File cacheFile, IOException e) {
+        log.warn("Cannot write compiled listing " + cacheFile + ", next check will parse the listing again", e);
+    }
 }
@@ -3,6 +3,7 @@ package net.kozelka.contentcheck.mojo;
 import java.io.File;
 import java.io.IOException;
 import net.kozelka.contentcheck.introspection.ContentIntrospector;
+import net.kozelka.contentcheck.introspection.MavenCoordinates;
 import org.apache.maven.plugin.logging.Log;
 
 /**
@@ -32,12 +33,12 @@ public class MyIntrospectionListener implements ContentIntrospector.Events {
         log.warn("Cannot check MANIFEST.MF file in JAR archive " + jarPath, e);
     }
 
-    public void cannotClose(String jarPath, IOException e) {
-        log.warn("Cannot close temporary JAR file " + jarPath,e);
+    public void cannotWriteIndex(File indexFile, IOException e) {
+        log.warn("Cannot write index " + indexFile + ", next check will walk the whole source", e);
     }
 
-    public void checkingInTmpfile(String jarPath, File tempFile) {
-        log.debug("Checking " + jarPath + " to be a vendor archive, using tempfile " + tempFile);
+    public void foundCoordinates(String entryName, MavenCoordinates coordinates) {
+        log.debug(String.format("Found '%s' in %s", coordinates, entryName));
     }
 
     public void processEntry(String entryName) {
@@ -9,6 +9,7 @@ import net.kozelka.contentcheck.conflict.impl.ClassConflictAnalyzer;
 import net.kozelka.contentcheck.conflict.impl.ClassConflictPrinter;
 import net.kozelka.contentcheck.conflict.impl.ConflictingResourcesReport;
 import net.kozelka.contentcheck.conflict.model.ArchiveInfo;
+import net.kozelka.contentcheck.conflict.model.SymbolTable;
 import net.kozelka.contentcheck.conflict.util.ArchiveLoader;
 import org.apache.maven.plugin.AbstractMojo;
 import org.apache.maven.plugin.MojoExecutionException;
@@ -19,7 +20,7 @@ import org.apache.maven.plugins.annotations.Parameter;
 import org.codehaus.plexus.util.cli.StreamConsumer;
 
 /**
- * Looks for conflicts within the libraries in given sourceFile.
+ * Looks for conflicts within the classpath elements in given sourceFile.
  *
  * @author Petr Kozelka
  * @since 1.0.3
@@ -33,7 +34,8 @@ public class WarClassConflictsMojo extends AbstractMojo {
     boolean skip;
 
     /**
-     * The archive file to be checked
+     * The archive file to be checked; a war or an ear, also exploded.
+     * All its classpath elements are checked against each other, including <code>WEB-INF/classes</code> and the modules of an ear.
      */
     @Parameter(defaultValue = "${project.build.directory}/${project.build.finalName}.war", property = "sourceFile")
     File sourceFile;
@@ -65,6 +67,13 @@ public class WarClassConflictsMojo extends AbstractMojo {
     @Parameter(defaultValue = "false")
     boolean reportResources;
 
+    /**
+     * How many classpath elements of the source are loaded at once.
+     * The results and the order of reports do not depend on this value.
+     */
+    @Parameter(defaultValue = "1", property = "contentcheck.introspectionThreads")
+    int introspectionThreads;
+
     /**
      * @deprecated Use {@link #toleratedOverlapCount} instead.
      */
@@ -89,7 +98,7 @@ public class WarClassConflictsMojo extends AbstractMojo {
         //
         try {
             final ClassConflictAnalyzer ccd = new ClassConflictAnalyzer();
-            final List<ArchiveInfo> archives = ArchiveLoader.loadWar(sourceFile);
+            final List<ArchiveInfo> archives = ArchiveLoader.loadClasspath(sourceFile, new SymbolTable(), introspectionThreads);
             final ClassConflictReport report = ccd.analyze(archives);
             final List<ArchiveConflict> archiveConflicts = report.getArchiveConflicts();
             final int totalOverlaps = report.getTotalOverlaps();
@@ -0,0 +1,306 @@
+package net.kozelka.contentcheck.util;
+
+import java.io.DataInput;
+import java.io.DataOutput;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.StringTokenizer;
+import java.util.regex.Pattern;
+
+/**
+ * <p>Ant-style path pattern, compiled once and matched many times.</p>
+ * <p>Semantics follow {@link org.codehaus.plexus.util.SelectorUtils#matchPath(String, String)}, with <code>/</code> as the separator:</p>
+ * <ul>
+ * <li><code>**</code> matches zero or more path segments, <code>*</code> and <code>?</code> match characters within one segment</li>
+ * <li>pattern and path must either both start with the separator, or both not</li>
+ * <li><code>%regex[...]</code> is a regular expression matched against the whole path; <code>%ant[...]</code> is the same as the bare pattern</li>
+ * </ul>
+ * <p>Matching walks the path string in place and does not allocate; instances are immutable and thread-safe.</p>
+ *
+ * @author Petr Kozelka
+ */
+public final class PathPattern {
+    private static final String REGEX_PREFIX = "%regex[";
+    private static final String ANT_PREFIX = "%ant[";
+    private static final String HANDLER_SUFFIX = "]";
+    private static final char SEPARATOR = '/';
+    private static final String ANY_SEGMENTS = "**";
+
+    private final String pattern;
+    private final Pattern regex;
+    private final boolean rooted;
+    /**
+     * Segments of the ant pattern; <code>null</code> item stands for <code>**</code>.
+     */
+    private final String[] segments;
+    /**
+     * For each segment, whether it contains any wildcard.
+     */
+    private final boolean[] wildcard;
+
+    private PathPattern(String pattern, Pattern regex, boolean rooted, String[] segments) {
+        this.pattern = pattern;
+        this.regex = regex;
+        this.rooted = rooted;
+        this.segments = segments;
+        this.wildcard = new boolean[segments.length];
+        for (int i = 0; i < segments.length; i++) {
+            final String segment = segments[i];
+            wildcard[i] = segment != null && (segment.indexOf('*') >= 0 || segment.indexOf('?') >= 0);
+        }
+    }
+
+    /**
+     * @param pattern ant-style pattern, optionally wrapped in <code>%ant[...]</code>, or regular expression wrapped in <code>%regex[...]</code>
+     * @return compiled pattern
+     */
+    public static PathPattern compile(String pattern) {
+        if (isHandled(pattern, REGEX_PREFIX)) {
+            final String regex = pattern.substring(REGEX_PREFIX.length(), pattern.length() - HANDLER_SUFFIX.length());
+            return new PathPattern(pattern, Pattern.compile(regex), false, new String[0]);
+        }
+        String antPattern = pattern;
+        if (isHandled(pattern, ANT_PREFIX)) {
+            antPattern = pattern.substring(ANT_PREFIX.length(), pattern.length() - HANDLER_SUFFIX.length());
+        }
+        final List<String> segments = new ArrayList<String>();
+        final StringTokenizer st = new StringTokenizer(antPattern, String.valueOf(SEPARATOR));
+        while (st.hasMoreTokens()) {
+            final String segment = st.nextToken();
+            if (segment.equals(ANY_SEGMENTS)) {
+                // consecutive ** are the same as single one
+                if (!segments.isEmpty() && segments.get(segments.size() - 1) == null) continue;
+                segments.add(null);
+            } else {
+                segments.add(segment);
+            }
+        }
+        final boolean rooted = antPattern.length() > 0 && antPattern.charAt(0) == SEPARATOR;
+        return new PathPattern(pattern, null, rooted, segments.toArray(new String[segments.size()]));
+    }
+
+    /**
+     * Writes the compiled form of this pattern, for {@link #read}.
+     * @param out where to write
+     */
+    public void write(DataOutput out) throws IOException {
+        out.writeUTF(pattern);
+        out.writeBoolean(regex != null);
+        if (regex != null) {
+            out.writeUTF(regex.pattern());
+            return;
+        }
+        out.writeBoolean(rooted);
+        out.writeInt(segments.length);
+        for (String segment : segments) {
+            out.writeBoolean(segment != null);
+            if (segment != null) {
+                out.writeUTF(segment);
+            }
+        }
+    }
+
+    /**
+     * Reads a pattern {@link #write written} before, without parsing it again; a regular expression is compiled again.
+     * @param in where to read from
+     * @return the pattern
+     */
+    public static PathPattern read(DataInput in) throws IOException {
+        final String pattern = in.readUTF();
+        if (in.readBoolean()) {
+            return new PathPattern(pattern, Pattern.compile(in.readUTF()), false, new String[0]);
+        }
+        final boolean rooted = in.readBoolean();
+        final String[] segments = new String[in.readInt()];
+        for (int i = 0; i < segments.length; i++) {
+            segments[i] = in.readBoolean() ? in.readUTF() : null;
+        }
+        return new PathPattern(pattern, null, rooted, segments);
+    }
+
+    private static boolean isHandled(String pattern, String prefix) {
+        return pattern.length() > prefix.length() + HANDLER_SUFFIX.length() + 1
+            && pattern.startsWith(prefix) && pattern.endsWith(HANDLER_SUFFIX);
+    }
+
+    /**
+     * @return the original pattern text
+     */
+    public String getPattern() {
+        return pattern;
+    }
+
+    /**
+     * @return true if this is a <code>%regex[...]</code> pattern
+     */
+    public boolean isRegex() {
+        return regex != null;
+    }
+
+    /**
+     * @return the regular expression of a <code>%regex[...]</code> pattern, null for ant patterns
+     */
+    public String getRegex() {
+        return regex == null ? null : regex.pattern();
+    }
+
+    /**
+     * @return true if the ant pattern starts with the separator; always false for regex
+     */
+    public boolean isRooted() {
+        return rooted;
+    }
+
+    /**
+     * @return true if this pattern matches only one path, with no wildcards and no regex
+     */
+    public boolean isLiteral() {
+        return regex == null && getLiteralSegmentCount() == segments.length;
+    }
+
+    /**
+     * @return number of ant pattern segments; zero for regex
+     */
+    public int getSegmentCount() {
+        return segments.length;
+    }
+
+    /**
+     * @param index segment index
+     * @return the segment text, or null for <code>**</code>
+     */
+    public String getSegment(int index) {
+        return segments[index];
+    }
+
+    /**
+     * @return number of leading segments without any wildcard; matching paths must start with exactly these segments
+     */
+    public int getLiteralSegmentCount() {
+        int count = 0;
+        while (count < segments.length && segments[count] != null && !wildcard[count]) {
+            count++;
+        }
+        return count;
+    }
+
+    /**
+     * Same as {@link org.codehaus.plexus.util.SelectorUtils#matchPath(String, String) SelectorUtils.matchPath(pattern, path)}.
+     * @param path the path to match
+     * @return true if the path matches this pattern
+     */
+    public boolean matches(String path) {
+        if (regex != null) {
+            return regex.matcher(path).matches();
+        }
+        final boolean pathRooted = path.length() > 0 && path.charAt(0) == SEPARATOR;
+        return pathRooted == rooted && matchSegments(path);
+    }
+
+    /**
+     * Matches path segments only, regardless of leading separator on either side.
+     * Same as <code>SelectorUtils.matchPath("/" + pattern, "/" + path)</code>, without building the strings.
+     * @param path the path to match
+     * @return true if the path matches this pattern
+     */
+    public boolean matchesSegments(String path) {
+        if (regex != null) {
+            return regex.matcher(path).matches();
+        }
+        return matchSegments(path);
+    }
+
+    /**
+     * Classic wildcard matching with single backtracking point, applied to whole segments:
+     * <code>**</code> behaves as star, other segments as single characters.
+     */
+    private boolean matchSegments(String path) {
+        final int length = path.length();
+        int p = 0;
+        int s = skipSeparators(path, 0);
+        int starP = -1;
+        int starS = -1;
+        while (s < length) {
+            if (p < segments.length) {
+                if (segments[p] == null) {
+                    starP = p++;
+                    starS = s;
+                    continue;
+                }
+                final int end = segmentEnd(path, s);
+                if (matchSegment(p, path, s, end)) {
+                    p++;
+                    s = skipSeparators(path, end);
+                    continue;
+                }
+            }
+            if (starP < 0) {
+                return false;
+            }
+            // let the last ** consume one more segment
+            p = starP + 1;
+            starS = skipSeparators(path, segmentEnd(path, starS));
+            s = starS;
+        }
+        while (p < segments.length && segments[p] == null) {
+            p++;
+        }
+        return p == segments.length;
+    }
+
+    private boolean matchSegment(int index, String path, int start, int end) {
+        final String segment = segments[index];
+        if (!wildcard[index]) {
+            return end - start == segment.length() && path.regionMatches(start, segment, 0, segment.length());
+        }
+        // same algorithm as segments, but on characters; '*' is star, '?' matches any
+        int p = 0;
+        int s = start;
+        int starP = -1;
+        int starS = -1;
+        final int patternLength = segment.length();
+        while (s < end) {
+            if (p < patternLength) {
+                final char pc = segment.charAt(p);
+                if (pc == '*') {
+                    starP = p++;
+                    starS = s;
+                    continue;
+                }
+                if (pc == '?' || pc == path.charAt(s)) {
+                    p++;
+                    s++;
+                    continue;
+                }
+            }
+            if (starP < 0) {
+                return false;
+            }
+            p = starP + 1;
+            s = ++starS;
+        }
+        while (p < patternLength && segment.charAt(p) == '*') {
+            p++;
+        }
+        return p == patternLength;
+    }
+
+    private static int skipSeparators(String path, int pos) {
+        final int length = path.length();
+        while (pos < length && path.charAt(pos) == SEPARATOR) {
+            pos++;
+        }
+        return pos;
+    }
+
+    private static int segmentEnd(String path, int pos) {
+        final int end = path.indexOf(SEPARATOR, pos);
+        return end < 0 ? path.length() : end;
+    }
+
+    @Override
+    public String toString() {
+        return pattern;
+    }
+}
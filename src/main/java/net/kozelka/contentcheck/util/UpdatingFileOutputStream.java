@@ -0,0 +1,174 @@
+package net.kozelka.contentcheck.util;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.EOFException;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+
+/**
+ * Writes a file only if the new content differs from the existing one.
+ * <p>Written bytes are compared with the existing file as they come, without writing anything.
+ * On the first difference, the matching prefix is copied to a temporary file next to the target, and the rest is written there;
+ * on {@link #close}, the temporary file atomically replaces the target.
+ * When the content is the same, the target is left untouched, including its modification time.</p>
+ * <p>If writing fails, call {@link #discard} instead of {@link #close}, to keep the target file intact.</p>
+ */
+public class UpdatingFileOutputStream extends OutputStream {
+    private final File file;
+    /**
+     * The existing content, while all written bytes match it; null after the first difference.
+     */
+    private InputStream existing;
+    private long matched;
+    private byte[] compareBuffer;
+    private File tmpFile;
+    private OutputStream out;
+    private boolean closed;
+    private boolean changed;
+
+    public UpdatingFileOutputStream(File file) throws IOException {
+        this.file = file;
+        if (file.isFile()) {
+            existing = new BufferedInputStream(new FileInputStream(file));
+        } else {
+            diverge();
+        }
+    }
+
+    /**
+     * @return true if the file was written; only known after {@link #close}
+     */
+    public boolean isChanged() {
+        return changed;
+    }
+
+    @Override
+    public void write(int b) throws IOException {
+        if (existing != null) {
+            if (existing.read() == (b & 0xff)) {
+                matched++;
+                return;
+            }
+            diverge();
+        }
+        out.write(b);
+    }
+
+    @Override
+    public void write(byte[] b, int off, int len) throws IOException {
+        while (existing != null && len > 0) {
+            if (compareBuffer == null) {
+                compareBuffer = new byte[8192];
+            }
+            final int n = existing.read(compareBuffer, 0, Math.min(len, compareBuffer.length));
+            if (n < 0) {
+                diverge();
+                break;
+            }
+            int same = 0;
+            while (same < n && compareBuffer[same] == b[off + same]) {
+                same++;
+            }
+            matched += same;
+            off += same;
+            len -= same;
+            if (same < n) {
+                diverge();
+            }
+        }
+        if (len > 0) {
+            out.write(b, off, len);
+        }
+    }
+
+    /**
+     * Switches from comparing to writing, starting with the matched prefix of the existing file.
+     */
+    private void diverge() throws IOException {
+        if (existing != null) {
+            existing.close();
+            existing = null;
+        }
+        final File directory = file.getAbsoluteFile().getParentFile();
+        directory.mkdirs();
+        tmpFile = File.createTempFile(file.getName(), ".tmp", directory);
+        out = new BufferedOutputStream(new FileOutputStream(tmpFile));
+        if (matched > 0) {
+            final InputStream prefix = new BufferedInputStream(new FileInputStream(file));
+            try {
+                for (long i = 0; i < matched; i++) {
+                    final int b = prefix.read();
+                    if (b < 0) {
+                        throw new EOFException("File changed while being compared: " + file);
+                    }
+                    out.write(b);
+                }
+            } finally {
+                prefix.close();
+            }
+        }
+    }
+
+    @Override
+    public void flush() throws IOException {
+        if (out != null) {
+            out.flush();
+        }
+    }
+
+    /**
+     * Replaces the file if the content differs; otherwise leaves it untouched.
+     */
+    @Override
+    public void close() throws IOException {
+        if (closed) return;
+        try {
+            if (existing != null) {
+                if (existing.read() < 0) {
+                    // same content
+                    existing.close();
+                    existing = null;
+                    closed = true;
+                    return;
+                }
+                // the new content is a prefix of the existing one
+                diverge();
+            }
+            out.close();
+            Files.move(tmpFile.toPath(), file.toPath(), StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+            changed = true;
+            closed = true;
+        } finally {
+            if (!closed) {
+                discard();
+            }
+        }
+    }
+
+    /**
+     * Abandons the written content, leaving the file untouched; does nothing after {@link #close}.
+     */
+    public void discard() throws IOException {
+        if (closed) return;
+        closed = true;
+        try {
+            if (existing != null) {
+                existing.close();
+            }
+            if (out != null) {
+                out.close();
+            }
+        } finally {
+            if (tmpFile != null) {
+                tmpFile.delete();
+            }
+        }
+    }
+}
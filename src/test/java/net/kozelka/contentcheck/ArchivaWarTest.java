@@ -54,7 +54,8 @@ public class ArchivaWarTest {
         final ClassConflictReport report = ccd.analyze(archives);
         printJarOverlaps(report);
         Assert.assertEquals("Total overlaps", 290, report.getTotalOverlaps());
-        Assert.assertEquals("Total entries", 235, report.getExploredArchives().size());
+        // 235 libraries and WEB-INF/classes
+        Assert.assertEquals("Total entries", 236, report.getExploredArchives().size());
         Assert.assertEquals("Archive conflicts", 18, report.getArchiveConflicts().size());
         printClassOverlaps(report);
     }
@@ -0,0 +1,30 @@
+package net.kozelka.contentcheck.conflict.model;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+public class SymbolTableTest {
+    @Test
+    public void testIntern() {
+        final SymbolTable symbols = new SymbolTable();
+        final int count = 5000;
+        for (int i = 0; i < count; i++) {
+            Assert.assertEquals(i, symbols.intern("org/example/C" + i + ".class"));
+        }
+        Assert.assertEquals(count, symbols.size());
+        for (int i = 0; i < count; i++) {
+            // equal but not identical string
+            Assert.assertEquals(i, symbols.intern(new String("org/example/C" + i + ".class")));
+            Assert.assertEquals("org/example/C" + i + ".class", symbols.get(i));
+        }
+        Assert.assertEquals(count, symbols.size());
+        Assert.assertEquals(count, symbols.intern(""));
+    }
+
+    @Test(expected = IndexOutOfBoundsException.class)
+    public void testUnknownId() {
+        final SymbolTable symbols = new SymbolTable();
+        symbols.intern("a");
+        symbols.get(1);
+    }
+}
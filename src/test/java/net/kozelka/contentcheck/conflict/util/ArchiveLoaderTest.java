@@ -0,0 +1,209 @@
+package net.kozelka.contentcheck.conflict.util;
+
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.TreeSet;
+import java.util.zip.CRC32;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipOutputStream;
+import net.kozelka.contentcheck.SupportUtils;
+import net.kozelka.contentcheck.conflict.api.ClassConflictReport;
+import net.kozelka.contentcheck.conflict.api.ResourceWithOptions;
+import net.kozelka.contentcheck.conflict.impl.ClassConflictAnalyzer;
+import net.kozelka.contentcheck.conflict.model.ArchiveInfo;
+import net.kozelka.contentcheck.conflict.model.SymbolTable;
+import org.codehaus.plexus.util.FileUtils;
+import org.junit.After;
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+
+public class ArchiveLoaderTest {
+    private File dir;
+
+    @Before
+    public void setup() throws IOException {
+        dir = File.createTempFile("archiveloader", "");
+        dir.delete();
+        dir.mkdirs();
+    }
+
+    @After
+    public void cleanup() throws IOException {
+        FileUtils.deleteDirectory(dir);
+    }
+
+    @Test
+    public void testStoredAndDeflatedLibraries() throws IOException {
+        final byte[] a = jar("a/A.class", "class A", "a/B.class", "class B");
+        final byte[] b = jar("b/C.class", "class C");
+        final File war = new File(dir, "x.war");
+        final ZipOutputStream zos = new ZipOutputStream(new FileOutputStream(war));
+        try {
+            add(zos, "WEB-INF/lib/a.jar", a, ZipEntry.STORED);
+            add(zos, "WEB-INF/lib/b.jar", b, ZipEntry.DEFLATED);
+            add(zos, "WEB-INF/web.xml", "<web-app/>".getBytes("UTF-8"), ZipEntry.STORED);
+        } finally {
+            zos.close();
+        }
+        final File exploded = new File(dir, "x");
+        new File(exploded, "WEB-INF/lib").mkdirs();
+        FileUtils.fileWrite(new File(exploded, "WEB-INF/web.xml"), "<web-app/>");
+        write(new File(exploded, "WEB-INF/lib/a.jar"), a);
+        write(new File(exploded, "WEB-INF/lib/b.jar"), b);
+
+        for (File source : new File[]{war, exploded}) {
+            final List<ArchiveInfo> archives = ArchiveLoader.loadWar(source);
+            Assert.assertEquals(source.getName(), 2, archives.size());
+            final ArchiveInfo archiveA = archives.get(0).getKey().equals("WEB-INF/lib/a.jar") ? archives.get(0) : archives.get(1);
+            final ArchiveInfo archiveB = archives.get(0) == archiveA ? archives.get(1) : archives.get(0);
+            Assert.assertEquals("WEB-INF/lib/b.jar", archiveB.getKey());
+            Assert.assertEquals(2, archiveA.getResourceCount());
+            Assert.assertEquals(2, archiveA.getClassCount());
+            Assert.assertEquals("a/B.class", archiveA.getUri(1));
+            Assert.assertEquals(crc("class B"), archiveA.getCrc(1));
+            Assert.assertEquals("class B".length(), archiveA.getSize(1));
+            Assert.assertEquals(1, archiveB.getResourceCount());
+            Assert.assertEquals("b/C.class", archiveB.getUri(0));
+            Assert.assertEquals(crc("class C"), archiveB.getCrc(0));
+            Assert.assertSame("archives share symbols", archiveA.getSymbols(), archiveB.getSymbols());
+        }
+    }
+
+    @Test
+    public void testParallelSameAsSerial() throws IOException {
+        final File war = SupportUtils.getFile("/archiva-webapp.war");
+        final SymbolTable serialSymbols = new SymbolTable();
+        final List<ArchiveInfo> serial = ArchiveLoader.loadClasspath(war, serialSymbols, 1);
+        final SymbolTable parallelSymbols = new SymbolTable();
+        final List<ArchiveInfo> parallel = ArchiveLoader.loadClasspath(war, parallelSymbols, 4);
+        Assert.assertEquals(serial.size(), parallel.size());
+        Assert.assertEquals(serialSymbols.size(), parallelSymbols.size());
+        for (int i = 0; i < serial.size(); i++) {
+            final ArchiveInfo expected = serial.get(i);
+            final ArchiveInfo actual = parallel.get(i);
+            Assert.assertEquals(expected.getKey(), actual.getKey());
+            Assert.assertSame(parallelSymbols, actual.getSymbols());
+            Assert.assertEquals(expected.getResourceCount(), actual.getResourceCount());
+            for (int j = 0; j < expected.getResourceCount(); j++) {
+                Assert.assertEquals(expected.getUriId(j), actual.getUriId(j));
+                Assert.assertEquals(expected.getCrc(j), actual.getCrc(j));
+                Assert.assertEquals(expected.getSize(j), actual.getSize(j));
+            }
+        }
+    }
+
+    @Test
+    public void testEar() throws IOException {
+        final byte[] lib = jar("x/Lib.class", "class Lib");
+        final byte[] ejb = jar("e/Ejb.class", "class Ejb");
+        final ByteArrayOutputStream webBytes = new ByteArrayOutputStream();
+        final ZipOutputStream web = new ZipOutputStream(webBytes);
+        add(web, "WEB-INF/classes/x/Lib.class", "class Lib patched".getBytes("UTF-8"), ZipEntry.DEFLATED);
+        add(web, "WEB-INF/lib/lib.jar", lib, ZipEntry.STORED);
+        add(web, "WEB-INF/lib/lib2.jar", lib, ZipEntry.DEFLATED);
+        web.close();
+        final File ear = new File(dir, "x.ear");
+        final ZipOutputStream zos = new ZipOutputStream(new FileOutputStream(ear));
+        try {
+            add(zos, "META-INF/application.xml", "<application/>".getBytes("UTF-8"), ZipEntry.DEFLATED);
+            add(zos, "ejb.jar", ejb, ZipEntry.STORED);
+            add(zos, "lib/lib.jar", lib, ZipEntry.DEFLATED);
+            add(zos, "stored.war", webBytes.toByteArray(), ZipEntry.STORED);
+            add(zos, "deflated.war", webBytes.toByteArray(), ZipEntry.DEFLATED);
+        } finally {
+            zos.close();
+        }
+        final File exploded = new File(dir, "x");
+        new File(exploded, "META-INF").mkdirs();
+        new File(exploded, "lib").mkdirs();
+        FileUtils.fileWrite(new File(exploded, "META-INF/application.xml"), "<application/>");
+        write(new File(exploded, "ejb.jar"), ejb);
+        write(new File(exploded, "lib/lib.jar"), lib);
+        new File(exploded, "stored.war/WEB-INF/classes/x").mkdirs();
+        new File(exploded, "stored.war/WEB-INF/lib").mkdirs();
+        FileUtils.fileWrite(new File(exploded, "stored.war/WEB-INF/classes/x/Lib.class"), "class Lib patched");
+        write(new File(exploded, "stored.war/WEB-INF/lib/lib.jar"), lib);
+        write(new File(exploded, "stored.war/WEB-INF/lib/lib2.jar"), lib);
+        write(new File(exploded, "deflated.war"), webBytes.toByteArray());
+
+        final List<String> expectedKeys = Arrays.asList(
+            "ejb.jar",
+            "lib/lib.jar",
+            "stored.war!/WEB-INF/classes",
+            "stored.war!/WEB-INF/lib/lib.jar",
+            "stored.war!/WEB-INF/lib/lib2.jar",
+            "deflated.war!/WEB-INF/classes",
+            "deflated.war!/WEB-INF/lib/lib.jar",
+            "deflated.war!/WEB-INF/lib/lib2.jar");
+        for (File source : new File[]{ear, exploded}) {
+            final List<ArchiveInfo> archives = ArchiveLoader.loadClasspath(source, new SymbolTable(), 3);
+            final List<String> keys = new ArrayList<String>();
+            for (ArchiveInfo archive : archives) {
+                keys.add(archive.getKey());
+            }
+            if (source == exploded) {
+                // exploded ear lists its modules alphabetically
+                Assert.assertEquals(source.getName(), new TreeSet<String>(expectedKeys), new TreeSet<String>(keys));
+            } else {
+                Assert.assertEquals(source.getName(), expectedKeys, keys);
+            }
+            final ClassConflictReport report = new ClassConflictAnalyzer().analyze(archives);
+            // x/Lib.class in 7 elements, each pair reported in both directions
+            Assert.assertEquals(source.getName(), 42, report.getTotalOverlaps());
+            for (ResourceWithOptions rwo : report.getResources()) {
+                // classes directories have different content than the libraries
+                Assert.assertEquals(rwo.getUri(), rwo.getUri().equals("x/Lib.class"), rwo.hasConflicts());
+            }
+        }
+    }
+
+    /**
+     * @return jar with given entries, deflated with data descriptors, like most tools write them
+     */
+    private static byte[] jar(String... namesAndContents) throws IOException {
+        final ByteArrayOutputStream baos = new ByteArrayOutputStream();
+        final ZipOutputStream zos = new ZipOutputStream(baos);
+        zos.putNextEntry(new ZipEntry(namesAndContents[0].substring(0, namesAndContents[0].indexOf('/') + 1)));
+        for (int i = 0; i < namesAndContents.length; i += 2) {
+            zos.putNextEntry(new ZipEntry(namesAndContents[i]));
+            zos.write(namesAndContents[i + 1].getBytes("UTF-8"));
+        }
+        zos.close();
+        return baos.toByteArray();
+    }
+
+    private static void add(ZipOutputStream zos, String name, byte[] content, int method) throws IOException {
+        final ZipEntry entry = new ZipEntry(name);
+        entry.setMethod(method);
+        if (method == ZipEntry.STORED) {
+            final CRC32 crc = new CRC32();
+            crc.update(content);
+            entry.setCrc(crc.getValue());
+            entry.setSize(content.length);
+            entry.setCompressedSize(content.length);
+        }
+        zos.putNextEntry(entry);
+        zos.write(content);
+    }
+
+    private static void write(File file, byte[] content) throws IOException {
+        final FileOutputStream os = new FileOutputStream(file);
+        try {
+            os.write(content);
+        } finally {
+            os.close();
+        }
+    }
+
+    private static long crc(String content) throws IOException {
+        final CRC32 crc = new CRC32();
+        crc.update(content.getBytes("UTF-8"));
+        return crc.getValue();
+    }
+}
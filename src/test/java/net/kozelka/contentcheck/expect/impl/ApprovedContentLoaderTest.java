@@ -0,0 +1,83 @@
+package net.kozelka.contentcheck.expect.impl;
+
+import java.io.File;
+import java.io.FileWriter;
+import java.io.IOException;
+import java.util.Set;
+import net.kozelka.contentcheck.expect.model.ApprovedEntry;
+import org.junit.After;
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+import org.mockito.Mockito;
+
+public class ApprovedContentLoaderTest {
+    private File listingFile;
+
+    @Before
+    public void setup() throws IOException {
+        listingFile = File.createTempFile("approved-content", ".txt");
+    }
+
+    @After
+    public void cleanup() {
+        listingFile.delete();
+    }
+
+    @Test
+    public void testDuplicateReported() throws Exception {
+        write("# comment\na.jar\n\nb.jar\n  a.jar\n");
+        final ApprovedContentLoader loader = new ApprovedContentLoader();
+        final ApprovedContentLoader.Events listener = Mockito.mock(ApprovedContentLoader.Events.class);
+        loader.getEvents().addListener(listener);
+        final Set<ApprovedEntry> entries = loader.load(listingFile);
+        Assert.assertEquals(3, entries.size());
+        Assert.assertTrue(ContentChecker.entrysetContainsUri(entries, "b.jar"));
+        Mockito.verify(listener).duplicate(listingFile, "a.jar", 5, 2);
+        Mockito.verifyNoMoreInteractions(listener);
+    }
+
+    @Test
+    public void testInvalidRegexReported() throws Exception {
+        write("a.jar\nregex:lib/(a.jar\n");
+        try {
+            new ApprovedContentLoader().load(listingFile);
+            Assert.fail("invalid regex must fail the load");
+        } catch (IOException e) {
+            Assert.assertTrue(e.getMessage(), e.getMessage().startsWith("Invalid rule at " + listingFile + ":2 - "));
+        }
+    }
+
+    @Test
+    public void testInvalidCoordinatesReported() throws Exception {
+        write("gav:org.slf4j:slf4j-api:1.7.*\n# comment\ngav:org.slf4j\n");
+        try {
+            new ApprovedContentLoader().load(listingFile);
+            Assert.fail("coordinates without artifactId must fail the load");
+        } catch (IOException e) {
+            Assert.assertTrue(e.getMessage(), e.getMessage().startsWith("Invalid rule at " + listingFile + ":3 - "));
+        }
+    }
+
+    @Test
+    public void testEmptyCoordinatesReported() throws Exception {
+        for (String rule : new String[]{"gav:g:", "gav::a", "gav::a:1.0", "gav:g:a:"}) {
+            write("a.jar\n" + rule + "\n");
+            try {
+                new ApprovedContentLoader().load(listingFile);
+                Assert.fail("coordinates with empty part must fail the load: " + rule);
+            } catch (IOException e) {
+                Assert.assertTrue(e.getMessage(), e.getMessage().startsWith("Invalid rule at " + listingFile + ":2 - "));
+            }
+        }
+    }
+
+    private void write(String content) throws IOException {
+        final FileWriter writer = new FileWriter(listingFile);
+        try {
+            writer.write(content);
+        } finally {
+            writer.close();
+        }
+    }
+}
@@ -1,6 +1,9 @@
 package net.kozelka.contentcheck.expect.impl;
 
+import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.LinkedHashSet;
+import java.util.List;
 import java.util.Set;
 import net.kozelka.contentcheck.expect.TestUtils;
 import net.kozelka.contentcheck.expect.api.ApproverReport;
@@ -70,4 +73,52 @@ public class ApproverReportTest {
         Assert.assertThat(ContentChecker.entrysetContainsUri(missingEntries, "c.jar"), CoreMatchers.is(true));
     }
 
+    @Test
+    public void testParallelSameAsSerial() {
+        final Set<ApprovedEntry> approvedEntries = new LinkedHashSet<ApprovedEntry>();
+        for (int i = 0; i < 1000; i++) {
+            approvedEntries.add(urientry(String.format("lib/a%d.jar", i * 3)));
+        }
+        approvedEntries.add(urientry("lib/b*/*.jar"));
+        approvedEntries.add(urientry("lib/c*/*.jar"));
+        final Set<ActualEntry> sourceContent = new LinkedHashSet<ActualEntry>();
+        for (int i = 0; i < 50000; i++) {
+            sourceContent.add(TestUtils.newActualEntry(String.format("lib/a%d.jar", i)));
+            sourceContent.add(TestUtils.newActualEntry(String.format("lib/b%d/x.jar", i % 100)));
+        }
+        final ApproverReport serial = ContentChecker.compareEntries(approvedEntries, sourceContent, 1);
+        final ApproverReport parallel = ContentChecker.compareEntries(approvedEntries, sourceContent, 4);
+        Assert.assertEquals(50000 - 1000, serial.getUnexpectedEntries().size());
+        Assert.assertEquals(1, serial.getMissingEntries().size());
+        Assert.assertEquals(new ArrayList<ActualEntry>(serial.getUnexpectedEntries()), new ArrayList<ActualEntry>(parallel.getUnexpectedEntries()));
+        Assert.assertEquals(new ArrayList<ApprovedEntry>(serial.getMissingEntries()), new ArrayList<ApprovedEntry>(parallel.getMissingEntries()));
+    }
+
+    @Test
+    public void testRuleHits() {
+        final Set<ApprovedEntry> approvedEntries = new LinkedHashSet<ApprovedEntry>();
+        final ApprovedEntry a = urientry("lib/a.jar");
+        final ApprovedEntry allJars = urientry("lib/*.jar");
+        final ApprovedEntry b = urientry("lib/b.jar");
+        final ApprovedEntry c = urientry("lib/c.jar");
+        approvedEntries.add(a);
+        approvedEntries.add(allJars);
+        approvedEntries.add(b);
+        approvedEntries.add(c);
+        final Set<ActualEntry> sourceContent = new LinkedHashSet<ActualEntry>();
+        sourceContent.add(TestUtils.newActualEntry("lib/a.jar"));
+        sourceContent.add(TestUtils.newActualEntry("lib/b.jar"));
+        sourceContent.add(TestUtils.newActualEntry("lib/x.jar"));
+        final ApproverReport report = ContentChecker.compareEntries(approvedEntries, sourceContent);
+
+        Assert.assertEquals(Integer.valueOf(1), report.getRuleHits().get(a));
+        Assert.assertEquals(Integer.valueOf(3), report.getRuleHits().get(allJars));
+        Assert.assertEquals(Integer.valueOf(0), report.getRuleHits().get(c));
+        Assert.assertEquals(2, report.getMultiplyMatchedEntries().size());
+        final List<ApprovedEntry> aRules = report.getMultiplyMatchedEntries().values().iterator().next();
+        Assert.assertEquals(Arrays.asList(a, allJars), aRules);
+        // "lib/*.jar" has an exclusive hit on x.jar, the literals do not
+        Assert.assertEquals(new ArrayList<ApprovedEntry>(Arrays.asList(a, b)), new ArrayList<ApprovedEntry>(report.getDeadRules()));
+        Assert.assertEquals(1, report.getMissingEntries().size());
+    }
 }
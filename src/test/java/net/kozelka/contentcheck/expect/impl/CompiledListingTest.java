@@ -0,0 +1,133 @@
+package net.kozelka.contentcheck.expect.impl;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import net.kozelka.contentcheck.introspection.MavenCoordinates;
+import org.codehaus.plexus.util.FileUtils;
+import org.junit.After;
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+
+public class CompiledListingTest {
+    private static final String LISTING = "# comment\n"
+        + "WEB-INF/lib/a.jar\n"
+        + "WEB-INF/lib/*.jar\n"
+        + "/WEB-INF/**/x*.jar\n"
+        + "**/c.jar\n"
+        + "%regex[.*/d\\.jar]\n"
+        + "regex:WEB-INF/lib/(a|b)(-\\d)?\\.jar\n"
+        + "regex:WEB-INF/lib/[b-e]\\.jar\n"
+        + "regex:.*\\.war\n"
+        + "gav:com.google.guava:guava\n"
+        + "gav:com.google.*:*:18.*\n"
+        + "WEB-INF/lib/a.jar\n";
+    private static final List<String> PATHS = Arrays.asList(
+        "WEB-INF/lib/a.jar",
+        "WEB-INF/lib/b-1.jar",
+        "WEB-INF/lib/c.jar",
+        "WEB-INF/lib/d.jar",
+        "/WEB-INF/x/y/xyz.jar",
+        "c.jar",
+        "lib/e.war",
+        "lib/renamed.jar");
+    private static final List<MavenCoordinates> GUAVA = Arrays.asList(new MavenCoordinates("com.google.guava", "guava", "18.0"));
+
+    private File workDir;
+    private File listingFile;
+    private File cacheFile;
+
+    @Before
+    public void setup() throws IOException {
+        workDir = File.createTempFile("compiled-listing", "");
+        workDir.delete();
+        workDir.mkdirs();
+        listingFile = new File(workDir, "approved-content.txt");
+        cacheFile = new File(workDir, "cache/approved-content.rules");
+        FileUtils.fileWrite(listingFile.getPath(), LISTING);
+        // old enough to be trusted
+        listingFile.setLastModified(System.currentTimeMillis() - 60000);
+    }
+
+    @After
+    public void cleanup() throws IOException {
+        FileUtils.deleteDirectory(workDir);
+    }
+
+    @Test
+    public void testSameAsCompiled() throws Exception {
+        final CompiledListing compiled = CompiledListing.compile(listingFile);
+        Assert.assertTrue(compiled.isOutdatedCache());
+        compiled.write(cacheFile);
+        Assert.assertFalse(compiled.isOutdatedCache());
+
+        final CompiledListing cached = CompiledListing.read(cacheFile, listingFile);
+        Assert.assertNotNull(cached);
+        Assert.assertFalse(cached.isOutdatedCache());
+        Assert.assertEquals(compiled.rules, cached.rules);
+        Assert.assertEquals(1, cached.duplicates.size());
+        Assert.assertEquals("WEB-INF/lib/a.jar", cached.duplicates.get(0).line);
+        Assert.assertEquals(12, cached.duplicates.get(0).lineNumber);
+        Assert.assertEquals(2, cached.duplicates.get(0).firstLineNumber);
+        for (String path : PATHS) {
+            for (List<MavenCoordinates> coordinates : Arrays.asList(Collections.<MavenCoordinates>emptyList(), GUAVA)) {
+                Assert.assertTrue(path, Arrays.equals(match(compiled.index, path, coordinates), match(cached.index, path, coordinates)));
+            }
+        }
+        // literal, glob, regex with groups, both gav rules and the duplicate literal
+        Assert.assertEquals("[1, 1, 0, 0, 0, 1, 0, 0, 1, 1, 1]", Arrays.toString(match(cached.index, "WEB-INF/lib/a.jar", GUAVA)));
+    }
+
+    @Test
+    public void testTouchedListing() throws Exception {
+        CompiledListing.compile(listingFile).write(cacheFile);
+        listingFile.setLastModified(listingFile.lastModified() + 10000);
+        // same content under new time is still used, and the cache is rewritten with the new time
+        final CompiledListing cached = CompiledListing.read(cacheFile, listingFile);
+        Assert.assertNotNull(cached);
+        Assert.assertTrue(cached.isOutdatedCache());
+        cached.write(cacheFile);
+        Assert.assertFalse(CompiledListing.read(cacheFile, listingFile).isOutdatedCache());
+    }
+
+    @Test
+    public void testChangedListing() throws Exception {
+        CompiledListing.compile(listingFile).write(cacheFile);
+        final long time = listingFile.lastModified();
+        // same size, different content
+        FileUtils.fileWrite(listingFile.getPath(), LISTING.replace("a.jar", "b.jar"));
+        listingFile.setLastModified(time + 10000);
+        Assert.assertNull(CompiledListing.read(cacheFile, listingFile));
+        FileUtils.fileWrite(listingFile.getPath(), LISTING + "x.jar\n");
+        listingFile.setLastModified(time);
+        Assert.assertNull(CompiledListing.read(cacheFile, listingFile));
+    }
+
+    @Test
+    public void testDamagedCache() throws Exception {
+        CompiledListing.compile(listingFile).write(cacheFile);
+        final RandomAccessFile raf = new RandomAccessFile(cacheFile, "rw");
+        try {
+            raf.setLength(raf.length() / 2);
+        } finally {
+            raf.close();
+        }
+        Assert.assertNull(CompiledListing.read(cacheFile, listingFile));
+        Assert.assertNull(CompiledListing.read(new File(workDir, "missing.rules"), listingFile));
+    }
+
+    /**
+     * @return hits per rule
+     */
+    private static int[] match(RuleIndex index, String path, List<MavenCoordinates> coordinates) {
+        final RuleHits hits = new RuleHits(index.size());
+        hits.begin();
+        index.match(path, coordinates, hits);
+        hits.end(0);
+        return hits.hits;
+    }
+}
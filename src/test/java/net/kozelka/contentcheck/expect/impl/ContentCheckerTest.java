@@ -2,6 +2,11 @@ package net.kozelka.contentcheck.expect.impl;
 
 import java.io.File;
 import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
 import java.util.Set;
 import net.kozelka.contentcheck.SupportUtils;
 import net.kozelka.contentcheck.expect.TestUtils;
@@ -11,6 +16,7 @@ import net.kozelka.contentcheck.expect.model.ApprovedEntry;
 import net.kozelka.contentcheck.introspection.ContentIntrospector;
 import net.kozelka.contentcheck.mojo.MyContentCheckerListener;
 import net.kozelka.contentcheck.mojo.MyIntrospectionListener;
+import org.codehaus.plexus.util.FileUtils;
 import org.hamcrest.CoreMatchers;
 import org.junit.Assert;
 import org.junit.Before;
@@ -133,8 +139,10 @@ public class ContentCheckerTest {
         final ContentChecker checker = new ContentChecker();
         checker.getEvents().addListener(contentCheckerListener);
         final File listingFile = SupportUtils.getFile("content-duplicit-entries-test.txt");
-        checker.readApprovedContent(listingFile);
-        Mockito.verify(contentCheckerListener, Mockito.times(1)).duplicate(Matchers.any(File.class), Matchers.anyString());
+        final Set<ApprovedEntry> content = checker.readApprovedContent(listingFile);
+        Mockito.verify(contentCheckerListener, Mockito.times(1)).duplicate(Matchers.any(File.class), Matchers.anyString(), Matchers.anyInt(), Matchers.anyInt());
+        Mockito.verify(contentCheckerListener).duplicate(listingFile, "WEB-INF/lib/a.jar", 5, 4);
+        Assert.assertThat("duplicate entries are still loaded", content.size(), CoreMatchers.is(2));
     }
 
     @Test
@@ -147,6 +155,28 @@ public class ContentCheckerTest {
             CoreMatchers.is(0));
     }
 
+    @Test
+    public void testCachedListing() throws IOException {
+        final File cacheDirectory = File.createTempFile("listing-cache", "");
+        cacheDirectory.delete();
+        try {
+            final File listingFile = SupportUtils.getFile("content-duplicit-entries-test.txt");
+            final File archiveFile = SupportUtils.getFile("test.war");
+            final ContentChecker checker = createContentChecker(archiveFile, false, SupportUtils.VENDOR1, VendorFilter.DEFAULT_VENDOR_MANIFEST_ENTRY_NAME, SupportUtils.DEFAULT_CHECK_FILES_PATTERN);
+            checker.setCacheDirectory(cacheDirectory);
+            final ApproverReport compiled = checker.check(listingFile);
+            Assert.assertEquals(1, cacheDirectory.list().length);
+            final ApproverReport cached = checker.check(listingFile);
+            Assert.assertEquals(actualUris(compiled.getUnexpectedEntries()), actualUris(cached.getUnexpectedEntries()));
+            Assert.assertEquals(compiled.getMissingEntries().toString(), cached.getMissingEntries().toString());
+            // duplicates are reported from the cache too
+            Mockito.verify(contentCheckerListener, Mockito.times(2)).duplicate(listingFile, "WEB-INF/lib/a.jar", 5, 4);
+            Mockito.verify(contentCheckerListener, Mockito.never()).cannotWriteCache(Matchers.any(File.class), Matchers.any(IOException.class));
+        } finally {
+            FileUtils.deleteDirectory(cacheDirectory);
+        }
+    }
+
     @Test
     public void testTopLevelJARS() throws IOException {
         final File listingFile = SupportUtils.getFile("content-toplevel-jars.txt");
@@ -161,6 +191,64 @@ public class ContentCheckerTest {
             CoreMatchers.is(true));
     }
 
+    @Test
+    public void testCheckAll() throws IOException {
+        final File workDir = File.createTempFile("check-all", "");
+        workDir.delete();
+        try {
+            final File listingFile = new File(workDir, "approved-content.txt");
+            final File archiveFile = SupportUtils.getFile("test.war");
+            final File directory = SupportUtils.getFile("test");
+            // a third source that has exactly the approved content
+            final File exact = new File(workDir, "exact");
+            FileUtils.copyFile(new File(directory, "WEB-INF/lib/b.jar"), new File(exact, "WEB-INF/lib/b.jar"));
+            FileUtils.copyFile(new File(directory, "WEB-INF/lib/b.jar"), new File(exact, "WEB-INF/lib/d.jar"));
+            FileUtils.fileWrite(listingFile.getPath(), "WEB-INF/lib/b.jar\nWEB-INF/lib/d.jar\n");
+
+            final ContentChecker checker = new ContentChecker();
+            checker.getEvents().addListener(contentCheckerListener);
+            checker.setParallelism(2);
+            final List<ContentIntrospector> introspectors = new ArrayList<ContentIntrospector>();
+            for (File source : Arrays.asList(directory, archiveFile, exact)) {
+                final ContentIntrospector introspector = VendorFilter.createIntrospector(introspectionListener, false,
+                    SupportUtils.VENDOR1, VendorFilter.DEFAULT_VENDOR_MANIFEST_ENTRY_NAME, SupportUtils.DEFAULT_CHECK_FILES_PATTERN);
+                introspector.setSourceFile(source);
+                introspectors.add(introspector);
+            }
+            final Map<File, ApproverReport> reports = checker.checkAll(listingFile, introspectors);
+            Assert.assertEquals(Arrays.asList(directory, archiveFile, exact), new ArrayList<File>(reports.keySet()));
+            for (File source : Arrays.asList(directory, archiveFile)) {
+                final ApproverReport report = reports.get(source);
+                Assert.assertEquals(source.getName(), Arrays.asList("WEB-INF/lib/a.jar", "WEB-INF/lib/c.jar"), actualUris(report.getUnexpectedEntries()));
+                Assert.assertEquals(source.getName(), Arrays.asList("WEB-INF/lib/d.jar"), approvedUris(report.getMissingEntries()));
+            }
+            Assert.assertTrue(reports.get(exact).getUnexpectedEntries().isEmpty());
+            Assert.assertTrue(reports.get(exact).getMissingEntries().isEmpty());
+            Mockito.verify(contentCheckerListener).summary(Matchers.eq(directory), Matchers.anyInt(), Matchers.anyInt());
+            Mockito.verify(contentCheckerListener).summary(Matchers.eq(exact), Matchers.eq(2), Matchers.anyInt());
+        } finally {
+            FileUtils.deleteDirectory(workDir);
+        }
+    }
+
+    private static List<String> actualUris(Set<ActualEntry> entries) {
+        final List<String> result = new ArrayList<String>();
+        for (ActualEntry entry : entries) {
+            result.add(entry.getUri());
+        }
+        Collections.sort(result);
+        return result;
+    }
+
+    private static List<String> approvedUris(Set<ApprovedEntry> entries) {
+        final List<String> result = new ArrayList<String>();
+        for (ApprovedEntry entry : entries) {
+            result.add(entry.getUri());
+        }
+        Collections.sort(result);
+        return result;
+    }
+
     private ContentChecker createContentChecker(File sourceFile, boolean ignoreVendorArchives, String vendor, String vendorManifestEntryName, String checkFilesPattern) {
 
         final ContentChecker contentChecker = new ContentChecker();
@@ -0,0 +1,163 @@
+package net.kozelka.contentcheck.expect.impl;
+
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.regex.Pattern;
+import net.kozelka.contentcheck.introspection.MavenCoordinates;
+import net.kozelka.contentcheck.util.PathPattern;
+import org.junit.Assert;
+import org.junit.Test;
+
+public class RuleIndexTest {
+    private static final List<String> RULES = Arrays.asList(
+        "WEB-INF/lib/a.jar",
+        "WEB-INF//lib/a.jar",
+        "WEB-INF/lib/b.jar/",
+        "/WEB-INF/lib/a.jar",
+        "WEB-INF/lib/*.jar",
+        "WEB-INF/**/x*.jar",
+        "**/c.jar",
+        "WEB-INF/lib/?.war",
+        "%ant[WEB-INF/classes/**]",
+        "%regex[.*/d\\.jar]",
+        "",
+        "/",
+        "META-INF/**",
+        "regex:WEB-INF/lib/guava-\\d+\\.\\d+.*\\.jar",
+        "regex:WEB-INF/lib/[a-c]\\.jar",
+        "regex:WEB-INF/lib/[b-e]\\.jar",
+        "regex:META-INF/(a|b)\\1\\.jar",
+        "regex:.*\\.war",
+        "regex:WEB-INF/x?/.*"
+    );
+
+    private static final List<String> PATHS = Arrays.asList(
+        "WEB-INF/lib/a.jar",
+        "WEB-INF/lib/b.jar",
+        "WEB-INF/lib//b.jar/",
+        "/WEB-INF/lib/a.jar",
+        "WEB-INF/lib/c.jar",
+        "WEB-INF/x/y/xyz.jar",
+        "c.jar",
+        "WEB-INF/lib/e.war",
+        "WEB-INF/classes/A.class",
+        "WEB-INF/lib/d.jar",
+        "d.jar",
+        "",
+        "/",
+        "//",
+        "META-INF",
+        "WEB-INF/lib/guava-18.0.jar",
+        "WEB-INF/lib/guava-r09.jar",
+        "META-INF/aa.jar",
+        "META-INF/ab.jar",
+        "WEB-INF//y.jar"
+    );
+
+    @Test
+    public void testSameAsBruteForce() {
+        final RuleIndex index = new RuleIndex(RULES);
+        Assert.assertEquals(RULES.size(), index.size());
+        for (String path : PATHS) {
+            final int[] expected = new int[RULES.size()];
+            int expectedCount = 0;
+            for (int i = 0; i < RULES.size(); i++) {
+                final String rule = RULES.get(i);
+                final boolean matches = rule.startsWith(RuleIndex.REGEX_RULE_PREFIX)
+                    ? Pattern.matches(rule.substring(RuleIndex.REGEX_RULE_PREFIX.length()), path)
+                    : PathPattern.compile(rule).matches(path);
+                if (matches) {
+                    expected[i] = 1;
+                    expectedCount++;
+                }
+            }
+            final RuleHits hits = new RuleHits(RULES.size());
+            hits.begin();
+            index.match(path, Collections.<MavenCoordinates>emptyList(), hits);
+            Assert.assertEquals(path, expectedCount, hits.end(0));
+            Assert.assertTrue(path, Arrays.equals(expected, hits.hits));
+        }
+    }
+
+    @Test
+    public void testNormalize() {
+        Assert.assertEquals("a/b", RuleIndex.normalize("a/b"));
+        Assert.assertEquals("a/b", RuleIndex.normalize("a//b/"));
+        Assert.assertEquals("/a", RuleIndex.normalize("//a//"));
+        Assert.assertEquals("/", RuleIndex.normalize("//"));
+        Assert.assertEquals("", RuleIndex.normalize(""));
+    }
+
+    @Test
+    public void testRegexLiteralPrefix() {
+        Assert.assertEquals("WEB-INF/lib/guava-", RegexRules.literalPrefix("WEB-INF/lib/guava-\\d+\\.jar"));
+        Assert.assertEquals("lib/a.", RegexRules.literalPrefix("lib/a\\.j?ar"));
+        Assert.assertEquals("lib/", RegexRules.literalPrefix("lib/(a|b)"));
+        Assert.assertEquals("", RegexRules.literalPrefix("lib/a|lib/b"));
+        Assert.assertEquals("", RegexRules.literalPrefix("(?i)lib/.*"));
+        Assert.assertEquals("lib", RegexRules.literalPrefix("lib+"));
+        Assert.assertEquals("li", RegexRules.literalPrefix("lib{2}"));
+    }
+
+    @Test
+    public void testRegexNamedGroups() {
+        // same group names in one bucket cannot be combined into one alternation
+        final RuleIndex index = new RuleIndex(Arrays.asList(
+            "regex:lib/(?<name>a)-\\d\\.jar",
+            "regex:lib/(?<name>b)-\\k<name>\\.jar",
+            "regex:lib/(?<!x)c\\.jar"));
+        final RuleHits hits = new RuleHits(index.size());
+        hits.begin();
+        index.match("lib/b-b.jar", Collections.<MavenCoordinates>emptyList(), hits);
+        Assert.assertEquals(1, hits.end(0));
+        Assert.assertTrue(Arrays.equals(new int[]{0, 1, 0}, hits.hits));
+    }
+
+    @Test
+    public void testRegexGroups() {
+        // groups inside the rules must not confuse which rule of the alternation matched
+        final RuleIndex index = new RuleIndex(Arrays.asList(
+            "regex:lib/(a|b)(-\\d)?\\.jar",
+            "regex:lib/((c)|(d))\\.jar",
+            "regex:lib/[d-e]\\.jar",
+            "regex:lib/(?:d|f)\\.jar"));
+        final RuleHits hits = new RuleHits(index.size());
+        hits.begin();
+        index.match("lib/d.jar", Collections.<MavenCoordinates>emptyList(), hits);
+        Assert.assertEquals(3, hits.end(0));
+        Assert.assertTrue(Arrays.equals(new int[]{0, 1, 1, 1}, hits.hits));
+        hits.begin();
+        index.match("lib/b-1.jar", Collections.<MavenCoordinates>emptyList(), hits);
+        Assert.assertEquals(1, hits.end(1));
+        Assert.assertTrue(Arrays.equals(new int[]{1, 1, 1, 1}, hits.hits));
+    }
+
+    @Test
+    public void testGavRules() {
+        final RuleIndex index = new RuleIndex(Arrays.asList(
+            "gav:com.google.guava:guava",
+            "gav:com.google.*:guava:18.*",
+            "gav:com.google.guava:guava:19.0",
+            "WEB-INF/lib/*.jar"));
+        final List<MavenCoordinates> guava18 = Arrays.asList(new MavenCoordinates("com.google.guava", "guava", "18.0"));
+        final RuleHits hits = new RuleHits(index.size());
+        hits.begin();
+        index.match("lib/renamed.jar", guava18, hits);
+        Assert.assertEquals(2, hits.end(0));
+        Assert.assertTrue(Arrays.equals(new int[]{1, 1, 0, 0}, hits.hits));
+
+        // shaded jar with the same coordinates twice still hits each rule once
+        hits.begin();
+        index.match("WEB-INF/lib/shaded.jar", Arrays.asList(
+            new MavenCoordinates("com.google.guava", "guava", "19.0"),
+            new MavenCoordinates("com.google.guava", "guava", "19.0")), hits);
+        Assert.assertEquals(3, hits.end(1));
+        Assert.assertTrue(Arrays.equals(new int[]{2, 1, 1, 1}, hits.hits));
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void testInvalidGavRule() {
+        new RuleIndex(Arrays.asList("gav:guava"));
+    }
+}
@@ -0,0 +1,76 @@
+package net.kozelka.contentcheck.expect.util;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Random;
+import org.codehaus.plexus.util.FileUtils;
+import org.junit.Assert;
+import org.junit.Test;
+
+public class ListingWriterTest {
+
+    @Test
+    public void testSpilledSameAsInMemory() throws IOException {
+        final Random random = new Random(17);
+        final List<String> paths = new ArrayList<String>();
+        for (int i = 0; i < 1000; i++) {
+            paths.add("WEB-INF/lib/" + Integer.toString(random.nextInt(300), 36) + ".jar");
+        }
+        final File dir = File.createTempFile("listing", "");
+        dir.delete();
+        try {
+            final File inMemory = new File(dir, "in-memory.txt");
+            final ListingWriter writer = new ListingWriter(inMemory);
+            for (String path : paths) {
+                writer.add(path);
+            }
+            writer.close();
+            final File spilled = new File(dir, "spilled.txt");
+            final File tempDirectory = new File(dir, "tmp");
+            tempDirectory.mkdirs();
+            final ListingWriter spillingWriter = new ListingWriter(spilled);
+            spillingWriter.setMaxEntriesInMemory(7);
+            spillingWriter.setTempDirectory(tempDirectory);
+            for (String path : paths) {
+                spillingWriter.add(path);
+            }
+            Assert.assertTrue("runs are spilled", tempDirectory.list().length > 0);
+            Assert.assertEquals("runs are not spilled next to the listing", 2, dir.list().length);
+            spillingWriter.close();
+            Assert.assertEquals(1000, spillingWriter.getCount());
+
+            final List<String> lines = FileUtils.loadFile(inMemory);
+            Assert.assertEquals(lines, FileUtils.loadFile(spilled));
+            final List<String> sorted = new ArrayList<String>(paths);
+            Collections.sort(sorted);
+            Assert.assertEquals(sorted, lines);
+            Assert.assertEquals("temporary files are deleted", 0, tempDirectory.list().length);
+        } finally {
+            FileUtils.deleteDirectory(dir);
+        }
+    }
+
+    @Test
+    public void testDiscard() throws IOException {
+        final File dir = File.createTempFile("listing", "");
+        dir.delete();
+        dir.mkdirs();
+        try {
+            final File listing = new File(dir, "listing.txt");
+            final ListingWriter writer = new ListingWriter(listing);
+            writer.setMaxEntriesInMemory(2);
+            writer.setTempDirectory(dir);
+            for (int i = 0; i < 10; i++) {
+                writer.add("lib/" + i + ".jar");
+            }
+            Assert.assertTrue("runs are spilled", dir.list().length > 0);
+            writer.discard();
+            Assert.assertEquals("temporary files are deleted, no listing is written", 0, dir.list().length);
+        } finally {
+            FileUtils.deleteDirectory(dir);
+        }
+    }
+}
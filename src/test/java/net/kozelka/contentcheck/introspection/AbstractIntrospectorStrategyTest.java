@@ -1,8 +1,11 @@
 package net.kozelka.contentcheck.introspection;
 
 import java.io.File;
+import java.io.FileNotFoundException;
 import java.io.InputStream;
+import java.util.ArrayList;
 import java.util.Collection;
+import java.util.List;
 import org.apache.commons.io.IOUtils;
 import org.hamcrest.Matchers;
 import org.junit.Test;
@@ -37,4 +40,53 @@ public abstract class AbstractIntrospectorStrategyTest {
         assertNotNull("content of WEB-INF/testfile.txt should not be empty!", data);
         assertThat((String) IOUtils.readLines(data).get(0), is("Lorem ipsumLorem ipsumLorem ipsumLorem ipsum"));
     }
+
+    @Test
+    public void testSessionReadsMultipleEntries() throws Exception {
+        final IntrospectionSession session = directoryStrategy.open(containerFileToBeChecked);
+        try {
+            for (String entryName : new String[]{"WEB-INF/testfile.txt", "WEB-INF/lib/a.jar", "WEB-INF/testfile.txt"}) {
+                final InputStream data = session.getInputStream(entryName);
+                try {
+                    assertThat(entryName, IOUtils.toByteArray(data).length > 0, is(true));
+                } finally {
+                    data.close();
+                }
+            }
+        } finally {
+            session.close();
+        }
+    }
+
+    @Test
+    public void testEntriesInNaturalOrderWithMetadata() throws Exception {
+        final List<String> paths = new ArrayList<String>();
+        final IntrospectionSession session = directoryStrategy.open(containerFileToBeChecked);
+        try {
+            final EntryCursor cursor = session.entries();
+            EntryInfo entry;
+            while ((entry = cursor.next()) != null) {
+                paths.add(entry.getPath());
+                assertThat(entry.getPath(), entry.isDirectory(), is(entry.getPath().endsWith("/")));
+                assertThat(entry.getPath(), entry.getTime() > 0, is(true));
+                if (entry.getPath().equals("WEB-INF/testfile.txt")) {
+                    assertThat(entry.getSize(), is(45L));
+                }
+            }
+        } finally {
+            session.close();
+        }
+        assertThat(paths, Matchers.contains("WEB-INF/", "WEB-INF/lib/", "WEB-INF/lib/a.jar", "WEB-INF/lib/b.jar",
+                                            "WEB-INF/lib/c.jar", "WEB-INF/testfile.txt"));
+    }
+
+    @Test(expected = FileNotFoundException.class)
+    public void testSessionMissingEntry() throws Exception {
+        final IntrospectionSession session = directoryStrategy.open(containerFileToBeChecked);
+        try {
+            session.getInputStream("WEB-INF/no-such-file.txt");
+        } finally {
+            session.close();
+        }
+    }
 }
@@ -1,18 +1,34 @@
 package net.kozelka.contentcheck.introspection;
 
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FilenameFilter;
+import java.io.FileOutputStream;
 import java.io.IOException;
+import java.io.InputStream;
 import java.util.ArrayList;
 import java.util.List;
+import java.util.Random;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipOutputStream;
 import net.kozelka.contentcheck.SupportUtils;
 import net.kozelka.contentcheck.expect.TestUtils;
 import net.kozelka.contentcheck.expect.impl.ContentCollector;
 import net.kozelka.contentcheck.expect.impl.VendorFilter;
 import net.kozelka.contentcheck.expect.model.ActualEntry;
+import org.codehaus.plexus.util.FileUtils;
+import org.codehaus.plexus.util.IOUtil;
+import org.hamcrest.Matchers;
 import org.junit.Test;
+import org.mockito.InOrder;
+import org.mockito.Mockito;
 
 import static org.hamcrest.CoreMatchers.is;
 import static org.junit.Assert.assertThat;
+import static org.mockito.Mockito.inOrder;
 import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.verify;
 
 
 public class ContentIntrospectorTest {
@@ -58,4 +74,329 @@ public class ContentIntrospectorTest {
             TestUtils.contains(sourceEntries, "WEB-INF/lib/c.jar"),
             is(true));
     }
+
+    @Test
+    public void testParallelIntrospectionKeepsOrder() throws IOException {
+        final ContentIntrospector.Events listener = mock(ContentIntrospector.Events.class);
+        final ContentIntrospector introspector = new ContentIntrospector();
+        introspector.getEvents().addListener(listener);
+        introspector.setCheckFilesPattern("**/*");
+        introspector.setParallelism(4);
+        introspector.setEntryContentFilter(new ContentIntrospector.EntryContentFilter() {
+            public boolean accept(String entryName, InputStream entryContentStream) throws IOException {
+                // earlier entries take longer, to provoke out-of-order completion
+                try {
+                    Thread.sleep(entryName.endsWith("a.jar") ? 200 : 10);
+                } catch (InterruptedException e) {
+                    throw new IOException(e.getMessage());
+                }
+                return !entryName.endsWith("b.jar");
+            }
+        });
+        introspector.setSourceFile(SupportUtils.getFile("test.war"));
+        final int totalCount = introspector.walk();
+        assertThat(totalCount, is(6));
+        final InOrder inOrder = inOrder(listener);
+        inOrder.verify(listener).processEntry("WEB-INF/");
+        inOrder.verify(listener).processEntry("WEB-INF/lib/");
+        inOrder.verify(listener).processEntry("WEB-INF/lib/a.jar");
+        inOrder.verify(listener).skippingEntryOwnModule("WEB-INF/lib/b.jar");
+        inOrder.verify(listener).processEntry("WEB-INF/lib/c.jar");
+        inOrder.verify(listener).processEntry("WEB-INF/testfile.txt");
+    }
+
+    @Test
+    public void testRecursiveIntrospection() throws IOException {
+        // app.ear contains web.war directly, and another copy inside a zip
+        final File war = SupportUtils.getFile("test.war");
+        final ByteArrayOutputStream zipBytes = new ByteArrayOutputStream();
+        final ZipOutputStream zip = new ZipOutputStream(zipBytes);
+        addEntry(zip, "web2.war", readBytes(war));
+        zip.close();
+        final File ear = File.createTempFile("app", ".ear");
+        ear.deleteOnExit();
+        final ZipOutputStream zos = new ZipOutputStream(new FileOutputStream(ear));
+        try {
+            addEntry(zos, "lib/", new byte[0]);
+            addEntry(zos, "web.war", readBytes(war));
+            addEntry(zos, "inner.zip", zipBytes.toByteArray());
+        } finally {
+            zos.close();
+        }
+
+        final ContentIntrospector.Events listener = mock(ContentIntrospector.Events.class);
+        final ContentIntrospector introspector = VendorFilter.createIntrospector(listener, true, SupportUtils.VENDOR1, VendorFilter.DEFAULT_VENDOR_MANIFEST_ENTRY_NAME, SupportUtils.DEFAULT_CHECK_FILES_PATTERN);
+        final List<ActualEntry> sourceEntries = new ArrayList<ActualEntry>();
+        introspector.getEvents().addListener(new ContentCollector(sourceEntries));
+        introspector.setRecursive(true);
+        introspector.setSourceFile(ear);
+        final int totalCount = introspector.walk();
+        ear.delete();
+
+        assertThat(totalCount, is(3 + 6 + 1 + 6));
+        final List<String> uris = new ArrayList<String>();
+        for (ActualEntry sourceEntry : sourceEntries) {
+            uris.add(sourceEntry.getUri());
+        }
+        assertThat(uris, Matchers.contains(
+            "web.war!/WEB-INF/lib/b.jar",
+            "web.war!/WEB-INF/lib/c.jar",
+            "inner.zip!/web2.war!/WEB-INF/lib/b.jar",
+            "inner.zip!/web2.war!/WEB-INF/lib/c.jar"));
+        verify(listener).skippingEntryOwnModule("web.war!/WEB-INF/lib/a.jar");
+        verify(listener).skippingEntryOwnModule("inner.zip!/web2.war!/WEB-INF/lib/a.jar");
+    }
+
+    @Test
+    public void testReadCoordinates() throws IOException {
+        final ByteArrayOutputStream jarBytes = new ByteArrayOutputStream();
+        final ZipOutputStream jar = new ZipOutputStream(jarBytes);
+        addEntry(jar, "META-INF/MANIFEST.MF", "Manifest-Version: 1.0\n".getBytes("UTF-8"));
+        addEntry(jar, "com/google/common/base/Strings.class", new byte[100]);
+        addEntry(jar, "META-INF/maven/com.google.guava/guava/pom.properties",
+            "groupId=com.google.guava\nartifactId=guava\nversion=18.0\n".getBytes("ISO-8859-1"));
+        jar.close();
+        final ByteArrayOutputStream warBytes = new ByteArrayOutputStream();
+        final ZipOutputStream war = new ZipOutputStream(warBytes);
+        addEntry(war, "WEB-INF/lib/g.jar", jarBytes.toByteArray());
+        war.close();
+        final File zipFile = File.createTempFile("app", ".zip");
+        zipFile.deleteOnExit();
+        final ZipOutputStream zos = new ZipOutputStream(new FileOutputStream(zipFile));
+        try {
+            addEntry(zos, "lib/renamed.jar", jarBytes.toByteArray());
+            addEntry(zos, "lib/plain.jar", new byte[0]);
+            addEntry(zos, "web.war", warBytes.toByteArray());
+        } finally {
+            zos.close();
+        }
+
+        final ContentIntrospector.Events listener = mock(ContentIntrospector.Events.class);
+        final ContentIntrospector introspector = VendorFilter.createIntrospector(listener, true, SupportUtils.VENDOR1, VendorFilter.DEFAULT_VENDOR_MANIFEST_ENTRY_NAME, SupportUtils.DEFAULT_CHECK_FILES_PATTERN);
+        final List<ActualEntry> sourceEntries = new ArrayList<ActualEntry>();
+        introspector.getEvents().addListener(new ContentCollector(sourceEntries));
+        introspector.setRecursive(true);
+        introspector.setReadCoordinates(true);
+        introspector.setSourceFile(zipFile);
+        introspector.walk();
+        zipFile.delete();
+
+        assertThat(sourceEntries.size(), is(3));
+        assertThat(sourceEntries.get(0).getCoordinates().toString(), is("[com.google.guava:guava:18.0]"));
+        assertThat(sourceEntries.get(1).getCoordinates().isEmpty(), is(true));
+        assertThat(sourceEntries.get(2).getUri(), is("web.war!/WEB-INF/lib/g.jar"));
+        assertThat(sourceEntries.get(2).getCoordinates().toString(), is("[com.google.guava:guava:18.0]"));
+        final InOrder inOrder = inOrder(listener);
+        inOrder.verify(listener).foundCoordinates(Mockito.eq("lib/renamed.jar"), Mockito.any(MavenCoordinates.class));
+        inOrder.verify(listener).processEntry("lib/renamed.jar");
+    }
+
+    @Test
+    public void testReadCoordinatesWithoutManifest() throws IOException {
+        // the vendor filter reads the whole jar while looking for a manifest, more than is kept for reading coordinates
+        final byte[] bigJar = createLargeJar();
+        final ByteArrayOutputStream warBytes = new ByteArrayOutputStream();
+        final ZipOutputStream war = new ZipOutputStream(warBytes);
+        addEntry(war, "WEB-INF/lib/big.jar", bigJar);
+        war.close();
+        final ByteArrayOutputStream innerBytes = new ByteArrayOutputStream();
+        final ZipOutputStream inner = new ZipOutputStream(innerBytes);
+        addEntry(inner, "web.war", warBytes.toByteArray());
+        inner.close();
+        final File zipFile = File.createTempFile("app", ".zip");
+        zipFile.deleteOnExit();
+        final ZipOutputStream zos = new ZipOutputStream(new FileOutputStream(zipFile));
+        try {
+            addEntry(zos, "lib/big.jar", bigJar);
+            addEntry(zos, "inner.zip", innerBytes.toByteArray());
+        } finally {
+            zos.close();
+        }
+
+        final ContentIntrospector.Events listener = mock(ContentIntrospector.Events.class);
+        final ContentIntrospector introspector = VendorFilter.createIntrospector(listener, true, SupportUtils.VENDOR1, VendorFilter.DEFAULT_VENDOR_MANIFEST_ENTRY_NAME, SupportUtils.DEFAULT_CHECK_FILES_PATTERN);
+        final List<ActualEntry> sourceEntries = new ArrayList<ActualEntry>();
+        introspector.getEvents().addListener(new ContentCollector(sourceEntries));
+        introspector.setRecursive(true);
+        introspector.setReadCoordinates(true);
+        introspector.setSourceFile(zipFile);
+        introspector.walk();
+        zipFile.delete();
+
+        assertThat(sourceEntries.size(), is(2));
+        assertThat(sourceEntries.get(0).getCoordinates().toString(), is("[com.google.guava:guava:18.0]"));
+        // nested deeper, the jar is opened again through the enclosing archives
+        assertThat(sourceEntries.get(1).getUri(), is("inner.zip!/web.war!/WEB-INF/lib/big.jar"));
+        assertThat(sourceEntries.get(1).getCoordinates().toString(), is("[com.google.guava:guava:18.0]"));
+    }
+
+    @Test
+    public void testIncrementalWalk() throws IOException {
+        final File dir = File.createTempFile("exploded", "");
+        dir.delete();
+        final File lib = new File(dir, "WEB-INF/lib");
+        lib.mkdirs();
+        new File(dir, "WEB-INF/classes").mkdirs();
+        final ByteArrayOutputStream jarBytes = new ByteArrayOutputStream();
+        final ZipOutputStream jar = new ZipOutputStream(jarBytes);
+        addEntry(jar, "META-INF/maven/com.google.guava/guava/pom.properties",
+            "groupId=com.google.guava\nartifactId=guava\nversion=18.0\n".getBytes("ISO-8859-1"));
+        jar.close();
+        writeFile(new File(lib, "guava.jar"), jarBytes.toByteArray());
+        writeFile(new File(lib, "plain.jar"), new byte[0]);
+        writeFile(new File(dir, "WEB-INF/classes/X.class"), new byte[10]);
+        writeFile(new File(dir, "WEB-INF/lib/web.war"), readBytes(SupportUtils.getFile("test.war")));
+        // timestamps of an older build, so that the index trusts them
+        final long past = System.currentTimeMillis() - 60000;
+        touchTree(dir, past);
+        final File indexFile = File.createTempFile("index", ".idx");
+        indexFile.delete();
+        try {
+            final int[] inspected = new int[1];
+            final List<String> full = walkLogged(dir, null, inspected, 1);
+            final List<String> first = walkLogged(dir, indexFile, inspected, 1);
+            assertThat(first, is(full));
+            inspected[0] = 0;
+            final List<String> second = walkLogged(dir, indexFile, inspected, 2);
+            assertThat(second, is(full));
+            assertThat("unchanged files are not read again", inspected[0], is(0));
+
+            // adding a file changes the directory, replacing content changes size
+            writeFile(new File(lib, "added.jar"), jarBytes.toByteArray());
+            writeFile(new File(lib, "plain.jar"), jarBytes.toByteArray());
+            new File(lib, "added.jar").setLastModified(past);
+            new File(lib, "plain.jar").setLastModified(past);
+            lib.setLastModified(past - 10000);
+            final List<String> changed = walkLogged(dir, null, inspected, 1);
+            inspected[0] = 0;
+            assertThat(walkLogged(dir, indexFile, inspected, 2), is(changed));
+            assertThat(inspected[0], is(2));
+            assertThat(changed, Matchers.hasItem("foundCoordinates WEB-INF/lib/plain.jar com.google.guava:guava:18.0"));
+        } finally {
+            indexFile.delete();
+            FileUtils.deleteDirectory(dir);
+        }
+    }
+
+    @Test
+    public void testIndexNotWritable() throws IOException {
+        final File notDirectory = File.createTempFile("index", ".tmp");
+        try {
+            final File indexFile = new File(notDirectory, "index.idx");
+            final ContentIntrospector.Events listener = mock(ContentIntrospector.Events.class);
+            final ContentIntrospector introspector = new ContentIntrospector();
+            introspector.getEvents().addListener(listener);
+            introspector.setSourceFile(SupportUtils.getFile("test"));
+            introspector.setIndexFile(indexFile, "test");
+            // the walk completes, only the failure is reported
+            assertThat(introspector.walk() > 0, is(true));
+            verify(listener).processEntry("WEB-INF/lib/a.jar");
+            verify(listener).cannotWriteIndex(Mockito.eq(indexFile), Mockito.any(IOException.class));
+        } finally {
+            notDirectory.delete();
+        }
+    }
+
+    private static List<String> walkLogged(File dir, File indexFile, final int[] inspected, int parallelism) throws IOException {
+        final List<String> log = new ArrayList<String>();
+        final ContentIntrospector introspector = new ContentIntrospector();
+        introspector.getEvents().addListener(new ContentIntrospector.Events() {
+            public void readingSourceFile(File sourceFile) {
+            }
+
+            public void skippingEntryNotMatching(String entry) {
+                log.add("skippingEntryNotMatching " + entry);
+            }
+
+            public void skippingEntryOwnModule(String entry) {
+                log.add("skippingEntryOwnModule " + entry);
+            }
+
+            public void cannotCheckManifest(String jarPath, Exception e) {
+            }
+
+            public void cannotWriteIndex(File indexFile, IOException e) {
+            }
+
+            public void foundCoordinates(String entryName, MavenCoordinates coordinates) {
+                log.add("foundCoordinates " + entryName + " " + coordinates);
+            }
+
+            public void processEntry(String entryName) {
+                log.add("processEntry " + entryName);
+            }
+        });
+        introspector.setEntryContentFilter(new ContentIntrospector.EntryContentFilter() {
+            public boolean accept(String entryName, InputStream entryContentStream) {
+                if (!entryName.contains("!/")) {
+                    synchronized (inspected) {
+                        inspected[0]++;
+                    }
+                }
+                return !entryName.endsWith("a.jar");
+            }
+        });
+        introspector.setRecursive(true);
+        introspector.setNestedArchiveFilter(new FilenameFilter() {
+            public boolean accept(File dir, String name) {
+                return name.endsWith(".war");
+            }
+        });
+        introspector.setReadCoordinates(true);
+        introspector.setSourceFile(dir);
+        introspector.setIndexFile(indexFile, "test");
+        introspector.setParallelism(parallelism);
+        final int totalCount = introspector.walk();
+        log.add("total " + totalCount);
+        return log;
+    }
+
+    /**
+     * @return a jar without manifest, with incompressible content larger than 1 MB followed by <code>pom.properties</code>
+     */
+    private static byte[] createLargeJar() throws IOException {
+        final byte[] data = new byte[1536 * 1024];
+        new Random(1).nextBytes(data);
+        final ByteArrayOutputStream jarBytes = new ByteArrayOutputStream();
+        final ZipOutputStream jar = new ZipOutputStream(jarBytes);
+        addEntry(jar, "data.bin", data);
+        addEntry(jar, "META-INF/maven/com.google.guava/guava/pom.properties",
+            "groupId=com.google.guava\nartifactId=guava\nversion=18.0\n".getBytes("ISO-8859-1"));
+        jar.close();
+        return jarBytes.toByteArray();
+    }
+
+    private static void touchTree(File file, long time) {
+        final File[] children = file.listFiles();
+        if (children != null) {
+            for (File child : children) {
+                touchTree(child, time);
+            }
+        }
+        file.setLastModified(time);
+    }
+
+    private static void writeFile(File file, byte[] content) throws IOException {
+        final FileOutputStream os = new FileOutputStream(file);
+        try {
+            os.write(content);
+        } finally {
+            os.close();
+        }
+    }
+
+    private static byte[] readBytes(File file) throws IOException {
+        final InputStream is = new FileInputStream(file);
+        try {
+            return IOUtil.toByteArray(is);
+        } finally {
+            is.close();
+        }
+    }
+
+    private static void addEntry(ZipOutputStream zos, String name, byte[] content) throws IOException {
+        zos.putNextEntry(new ZipEntry(name));
+        zos.write(content);
+        zos.closeEntry();
+    }
 }
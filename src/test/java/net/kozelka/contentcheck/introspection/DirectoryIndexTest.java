@@ -0,0 +1,25 @@
+package net.kozelka.contentcheck.introspection;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+public class DirectoryIndexTest {
+
+    @Test
+    public void testTrustingAllRecords() {
+        final long walkTime = 100000;
+        final DirectoryIndex index = new DirectoryIndex("test", walkTime);
+        index.directories.put("", new DirectoryIndex.DirectoryRecord(walkTime - 60000, new String[]{"a.jar"}, new boolean[]{false}));
+        index.files.put("a.jar", new DirectoryIndex.FileRecord(10, walkTime - 60000));
+        Assert.assertTrue(index.isTrustingAllRecords());
+
+        // a file modified right before the walk is only trusted by an index of a later walk
+        index.files.put("b.jar", new DirectoryIndex.FileRecord(10, walkTime - 1000));
+        Assert.assertFalse(index.isTrustingAllRecords());
+        final DirectoryIndex later = new DirectoryIndex("test", walkTime + 60000);
+        later.directories.putAll(index.directories);
+        later.files.putAll(index.files);
+        Assert.assertTrue(later.hasSameRecords(index));
+        Assert.assertTrue(later.isTrustingAllRecords());
+    }
+}
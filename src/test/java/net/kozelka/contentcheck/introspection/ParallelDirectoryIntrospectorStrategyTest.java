@@ -0,0 +1,9 @@
+package net.kozelka.contentcheck.introspection;
+
+import net.kozelka.contentcheck.SupportUtils;
+
+public class ParallelDirectoryIntrospectorStrategyTest extends AbstractIntrospectorStrategyTest {
+    public ParallelDirectoryIntrospectorStrategyTest() {
+        super(new DirectoryIntrospectorStrategy(4), SupportUtils.getFile("test"));
+    }
+}
@@ -0,0 +1,149 @@
+package net.kozelka.contentcheck.introspection;
+
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.RandomAccessFile;
+import java.util.Enumeration;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipFile;
+import java.util.zip.ZipOutputStream;
+import net.kozelka.contentcheck.SupportUtils;
+import org.codehaus.plexus.util.IOUtil;
+import org.junit.Assert;
+import org.junit.Test;
+
+public class ZipCentralDirectoryReaderTest {
+    private static final int ZIP64_COUNT = 70000;
+
+    @Test
+    public void testSameAsZipFile() throws Exception {
+        final File war = SupportUtils.getFile("test.war");
+        final RandomAccessFile raf = new RandomAccessFile(war, "r");
+        final ZipFile zipFile = new ZipFile(war);
+        try {
+            final ZipCentralDirectoryReader reader = new ZipCentralDirectoryReader(raf.getChannel());
+            Assert.assertEquals(6, reader.getEntryCount());
+            final Enumeration<? extends ZipEntry> expectedEntries = zipFile.entries();
+            while (expectedEntries.hasMoreElements()) {
+                final ZipEntry expected = expectedEntries.nextElement();
+                Assert.assertTrue("premature end at " + expected.getName(), reader.next());
+                Assert.assertEquals(expected.getName(), reader.getName());
+                Assert.assertEquals(expected.getCrc(), reader.getCrc());
+                Assert.assertEquals(expected.getSize(), reader.getSize());
+                Assert.assertEquals(expected.getCompressedSize(), reader.getCompressedSize());
+                Assert.assertEquals(expected.getMethod(), reader.getMethod());
+                Assert.assertEquals(expected.getTime(), reader.getTime());
+                Assert.assertEquals(expected.isDirectory(), reader.isDirectory());
+            }
+            Assert.assertFalse(reader.next());
+        } finally {
+            zipFile.close();
+            raf.close();
+        }
+    }
+
+    @Test
+    public void testEmbeddedArchive() throws Exception {
+        final File war = SupportUtils.getFile("test.war");
+        final File file = File.createTempFile("embedded", ".bin");
+        file.deleteOnExit();
+        final int preambleSize = 1000;
+        final FileOutputStream fos = new FileOutputStream(file);
+        try {
+            fos.write(new byte[preambleSize]);
+            final FileInputStream fis = new FileInputStream(war);
+            try {
+                IOUtil.copy(fis, fos);
+            } finally {
+                fis.close();
+            }
+        } finally {
+            fos.close();
+        }
+        final RandomAccessFile raf = new RandomAccessFile(file, "r");
+        try {
+            final ZipCentralDirectoryReader reader = new ZipCentralDirectoryReader(raf.getChannel(), preambleSize, war.length());
+            Assert.assertTrue(reader.next());
+            Assert.assertEquals("WEB-INF/", reader.getName());
+            Assert.assertEquals(preambleSize, reader.getLocalHeaderOffset());
+            Assert.assertEquals(preambleSize + 30 + "WEB-INF/".length(), reader.getDataOffset());
+        } finally {
+            raf.close();
+            file.delete();
+        }
+    }
+
+    @Test
+    public void testZip64() throws Exception {
+        final File file = File.createTempFile("zip64", ".zip");
+        file.deleteOnExit();
+        writeZip64(new FileOutputStream(file));
+        final RandomAccessFile raf = new RandomAccessFile(file, "r");
+        try {
+            final ZipCentralDirectoryReader reader = new ZipCentralDirectoryReader(raf.getChannel());
+            Assert.assertEquals(ZIP64_COUNT, reader.getEntryCount());
+            int cnt = 0;
+            while (reader.next()) {
+                Assert.assertEquals("e" + cnt, reader.getName());
+                cnt++;
+            }
+            Assert.assertEquals(ZIP64_COUNT, cnt);
+        } finally {
+            raf.close();
+            file.delete();
+        }
+    }
+
+    @Test
+    public void testZip64WithPreamble() throws Exception {
+        // like a self-extracting archive: offsets in the archive do not count the stub
+        final File file = File.createTempFile("zip64", ".exe");
+        file.deleteOnExit();
+        final int preambleSize = 1000;
+        final FileOutputStream fos = new FileOutputStream(file);
+        fos.write(new byte[preambleSize]);
+        writeZip64(fos);
+        final RandomAccessFile raf = new RandomAccessFile(file, "r");
+        try {
+            final ZipCentralDirectoryReader reader = new ZipCentralDirectoryReader(raf.getChannel());
+            Assert.assertEquals(ZIP64_COUNT, reader.getEntryCount());
+            Assert.assertTrue(reader.next());
+            Assert.assertEquals("e0", reader.getName());
+            Assert.assertEquals(preambleSize, reader.getLocalHeaderOffset());
+        } finally {
+            raf.close();
+            file.delete();
+        }
+    }
+
+    /**
+     * Writes an archive with more than 65535 entries, which forces ZipOutputStream to write Zip64 end records.
+     * @param os the stream, closed when done
+     */
+    private static void writeZip64(OutputStream os) throws IOException {
+        final ZipOutputStream zos = new ZipOutputStream(os);
+        try {
+            zos.setLevel(0);
+            for (int i = 0; i < ZIP64_COUNT; i++) {
+                zos.putNextEntry(new ZipEntry("e" + i));
+                zos.closeEntry();
+            }
+        } finally {
+            zos.close();
+        }
+    }
+
+    @Test(expected = IOException.class)
+    public void testNotAnArchive() throws Exception {
+        final File file = SupportUtils.getFile("content.txt");
+        final RandomAccessFile raf = new RandomAccessFile(file, "r");
+        try {
+            new ZipCentralDirectoryReader(raf.getChannel());
+        } finally {
+            raf.close();
+        }
+    }
+}
@@ -0,0 +1,89 @@
+package net.kozelka.contentcheck.mojo;
+
+import java.io.File;
+import java.io.FileWriter;
+import java.io.IOException;
+import net.kozelka.contentcheck.SupportUtils;
+import org.apache.maven.plugin.MojoExecutionException;
+import org.apache.maven.plugin.MojoFailureException;
+import org.apache.maven.plugin.logging.Log;
+import org.codehaus.plexus.util.FileUtils;
+import org.junit.After;
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+import org.mockito.Mockito;
+
+public class ContentCheckMojoTest {
+    private File workDir;
+    private Log log;
+    private ContentCheckMojo mojo;
+
+    @Before
+    public void setup() throws IOException {
+        workDir = File.createTempFile("contentcheck", "");
+        workDir.delete();
+        workDir.mkdirs();
+        log = Mockito.mock(Log.class);
+        mojo = new ContentCheckMojo();
+        mojo.setLog(log);
+        mojo.basedir = SupportUtils.getFile("test.war").getParentFile();
+        mojo.contentListing = new File(workDir, "approved-content.txt");
+        mojo.contentListingGenerated = new File(workDir, "generated.txt");
+        mojo.listingCacheDirectory = new File(workDir, "cache");
+        mojo.useListingCache = true;
+        mojo.msgMissing = "File is expected but not found: %s";
+        mojo.msgUnexpected = "Found unexpected file: %s";
+        mojo.failOnMissing = false;
+        mojo.failOnUnexpected = true;
+        mojo.vendorId = SupportUtils.VENDOR1;
+        mojo.manifestVendorEntry = "Implementation-Vendor-Id";
+        mojo.checkFilesPattern = SupportUtils.DEFAULT_CHECK_FILES_PATTERN;
+        mojo.introspectionThreads = 2;
+    }
+
+    @After
+    public void cleanup() throws IOException {
+        FileUtils.deleteDirectory(workDir);
+    }
+
+    @Test
+    public void testSourceFiles() throws Exception {
+        write(mojo.contentListing, "WEB-INF/lib/b.jar\nWEB-INF/lib/d.jar\n");
+        mojo.sourceFiles = new String[]{"test", "test.war", "nothing/*.zip"};
+        try {
+            mojo.execute();
+            Assert.fail("unexpected entries must fail the build");
+        } catch (MojoFailureException e) {
+            Assert.assertEquals("2 of 2 sources have invalid content: 2 expected entries are missing, 4 unexpected entries appear", e.getMessage());
+        }
+        Mockito.verify(log).warn("No source matches nothing/*.zip");
+        for (String source : new String[]{"test", "test.war"}) {
+            Mockito.verify(log).warn(source + ": File is expected but not found: WEB-INF/lib/d.jar");
+            Mockito.verify(log).error(source + ": Found unexpected file: WEB-INF/lib/a.jar");
+            Mockito.verify(log).error(source + ": Found unexpected file: WEB-INF/lib/c.jar");
+        }
+        Assert.assertFalse("no listing is generated from several sources", mojo.contentListingGenerated.exists());
+    }
+
+    @Test
+    public void testMissingSourceFile() throws Exception {
+        write(mojo.contentListing, "WEB-INF/lib/b.jar\n");
+        mojo.sourceFiles = new String[]{"test.war", "missing.war"};
+        try {
+            mojo.execute();
+            Assert.fail("missing source must fail the build");
+        } catch (MojoExecutionException e) {
+            Assert.assertTrue(e.getMessage(), e.getMessage().contains("missing.war"));
+        }
+    }
+
+    private static void write(File file, String content) throws IOException {
+        final FileWriter writer = new FileWriter(file);
+        try {
+            writer.write(content);
+        } finally {
+            writer.close();
+        }
+    }
+}
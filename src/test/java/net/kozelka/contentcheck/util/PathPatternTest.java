@@ -0,0 +1,69 @@
+package net.kozelka.contentcheck.util;
+
+import org.codehaus.plexus.util.SelectorUtils;
+import org.junit.Assert;
+import org.junit.Test;
+
+public class PathPatternTest {
+    private static final String[] PATTERNS = {
+        "WEB-INF/lib/a.jar",
+        "WEB-INF/lib/*.jar",
+        "WEB-INF/lib/*",
+        "WEB-INF/**/*.jar",
+        "**/*.jar",
+        "**",
+        "**/**/lib/**",
+        "WEB-INF/**",
+        "WEB-INF/**/lib/**/x*.jar",
+        "/WEB-INF/lib/*.jar",
+        "WEB-INF/lib/?.jar",
+        "WEB-INF/lib/a*b*c.jar",
+        "WEB-INF//lib/a.jar",
+        "*",
+        "",
+        "%ant[WEB-INF/lib/*.jar]",
+        "%regex[WEB-INF/lib/[ab]\\.jar]",
+        "%regex[]",
+        "%regex[x]",
+    };
+
+    private static final String[] PATHS = {
+        "WEB-INF/lib/a.jar",
+        "WEB-INF/lib/b.jar",
+        "WEB-INF/lib/abc.jar",
+        "WEB-INF/lib/aXbYc.jar",
+        "WEB-INF/lib/aXbYcZ.jar",
+        "WEB-INF/lib/",
+        "WEB-INF/lib/sub/xyz.jar",
+        "WEB-INF/a/lib/b/lib/xy.jar",
+        "WEB-INF/classes/x.class",
+        "/WEB-INF/lib/a.jar",
+        "WEB-INF//lib/a.jar",
+        "a.jar",
+        "x",
+        "",
+    };
+
+    @Test
+    public void testSameAsSelectorUtils() {
+        for (String pattern : PATTERNS) {
+            final PathPattern compiled = PathPattern.compile(pattern);
+            for (String path : PATHS) {
+                Assert.assertEquals(pattern + " vs " + path,
+                    SelectorUtils.matchPath(pattern, path), compiled.matches(path));
+            }
+        }
+    }
+
+    @Test
+    public void testMatchesSegments() {
+        for (String pattern : PATTERNS) {
+            if (pattern.startsWith("%")) continue;
+            final PathPattern compiled = PathPattern.compile("/" + pattern);
+            for (String path : PATHS) {
+                Assert.assertEquals(pattern + " vs " + path,
+                    SelectorUtils.matchPath("/" + pattern, "/" + path), compiled.matchesSegments(path));
+            }
+        }
+    }
+}
@@ -0,0 +1,68 @@
+package net.kozelka.contentcheck.util;
+
+import java.io.File;
+import java.io.IOException;
+import org.codehaus.plexus.util.FileUtils;
+import org.junit.After;
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+
+public class UpdatingFileOutputStreamTest {
+    private File dir;
+    private File file;
+
+    @Before
+    public void setup() throws IOException {
+        dir = File.createTempFile("updating", "");
+        dir.delete();
+        file = new File(dir, "sub/out.txt");
+    }
+
+    @After
+    public void cleanup() throws IOException {
+        FileUtils.deleteDirectory(dir);
+    }
+
+    @Test
+    public void testWriteOnlyWhenChanged() throws IOException {
+        Assert.assertTrue("new file", write("hello world"));
+        Assert.assertEquals("hello world", FileUtils.fileRead(file));
+        final long past = System.currentTimeMillis() - 60000;
+        file.setLastModified(past);
+
+        Assert.assertFalse("same content", write("hello world"));
+        Assert.assertEquals(past / 1000, file.lastModified() / 1000);
+
+        Assert.assertTrue("different content", write("hello there"));
+        Assert.assertEquals("hello there", FileUtils.fileRead(file));
+        Assert.assertTrue("shorter content", write("hello"));
+        Assert.assertEquals("hello", FileUtils.fileRead(file));
+        Assert.assertTrue("longer content", write("hello again"));
+        Assert.assertEquals("hello again", FileUtils.fileRead(file));
+        Assert.assertEquals("no temporary files are left", 1, file.getParentFile().list().length);
+    }
+
+    @Test
+    public void testDiscard() throws IOException {
+        write("original");
+        final UpdatingFileOutputStream os = new UpdatingFileOutputStream(file);
+        os.write("other".getBytes("UTF-8"));
+        os.discard();
+        os.close();
+        Assert.assertEquals("original", FileUtils.fileRead(file));
+        Assert.assertEquals("no temporary files are left", 1, file.getParentFile().list().length);
+    }
+
+    /**
+     * Writes the first byte separately, to exercise both write methods.
+     */
+    private boolean write(String content) throws IOException {
+        final byte[] bytes = content.getBytes("UTF-8");
+        final UpdatingFileOutputStream os = new UpdatingFileOutputStream(file);
+        os.write(bytes[0]);
+        os.write(bytes, 1, bytes.length - 1);
+        os.close();
+        return os.isChanged();
+    }
+}